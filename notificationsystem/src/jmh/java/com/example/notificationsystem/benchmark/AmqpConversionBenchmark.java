@@ -0,0 +1,61 @@
+package com.example.notificationsystem.benchmark;
+
+import com.example.notificationsystem.entity.NotificationDto;
+import com.example.notificationsystem.util.NotificationBinaryMessageConverter;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+/**
+ * NotificationDto to and from an AMQP message, through the converter RabbitMQConfig registers.
+ * "json" is plain Jackson2JsonMessageConverter (notification.rabbit.codec=json), "binary" the compact codec.
+ * The size of the converted body is reported next to the toMessage score as payloadBytes.
+ */
+@State(Scope.Benchmark)
+public class AmqpConversionBenchmark {
+
+    @Param({"json", "binary"})
+    public String codec;
+
+    private NotificationBinaryMessageConverter converter;
+    private NotificationDto notification;
+    private Message message;
+
+    @Setup
+    public void setUp() {
+        converter = new NotificationBinaryMessageConverter(new Jackson2JsonMessageConverter(), "binary".equals(codec),
+                NotificationBinaryMessageConverter.VERSION_2);
+        notification = new NotificationDto();
+        notification.setId(184467);
+        notification.setUserId(5123);
+        notification.setMessage("Your weekly report is ready: 12 new comments and 3 mentions");
+        notification.setSource("reports");
+        notification.setCreatedAt(1718000000000L);
+        message = converter.toMessage(notification, new MessageProperties());
+    }
+
+    // Body size of the last converted message; EVENTS counters are summed over threads, so read it with one thread
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Payload {
+        public long payloadBytes;
+    }
+
+    @Benchmark
+    public Message toMessage(Payload payload) {
+        Message converted = converter.toMessage(notification, new MessageProperties());
+        payload.payloadBytes = converted.getBody().length;
+        return converted;
+    }
+
+    @Benchmark
+    public Object fromMessage() {
+        return converter.fromMessage(message);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.notificationsystem.benchmark;
+
+import com.example.notificationsystem.security.JwtUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+
+/**
+ * Token generation and the per-request parse/validate calls of JwtUtil. claimsCacheSize=0 makes every call verify
+ * the signature (Caffeine evicts right after the insert), the default size measures the cached path, including the
+ * copy of the cached claims each call gets.
+ */
+@State(Scope.Benchmark)
+public class JwtUtilBenchmark {
+
+    @Param({"0", "100000"})
+    public long claimsCacheSize;
+
+    private JwtUtil jwtUtil;
+    private UserDetails userDetails;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(new SimpleMeterRegistry(), claimsCacheSize);
+        userDetails = User.withUsername("user5123")
+                .password("")
+                .authorities("ROLE_USER", "ROLE_SUBSCRIBER")
+                .build();
+        token = jwtUtil.generateToken(userDetails);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken(userDetails);
+    }
+
+    @Benchmark
+    public String extractUsername() {
+        return jwtUtil.extractUsername(token);
+    }
+
+    @Benchmark
+    public Boolean validateToken() {
+        return jwtUtil.validateToken(token, userDetails);
+    }
+
+    // What JwtRequestFilter does per request in stateless mode
+    @Benchmark
+    public List<GrantedAuthority> extractAuthorities() {
+        return jwtUtil.extractClaim(token, jwtUtil::extractAuthorities);
+    }
+}
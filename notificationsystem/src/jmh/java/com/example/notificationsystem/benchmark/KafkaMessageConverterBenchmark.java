@@ -0,0 +1,52 @@
+package com.example.notificationsystem.benchmark;
+
+import com.example.notificationsystem.entity.NotificationDto;
+import com.example.notificationsystem.util.KafkaMessageConverter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * Decoding of a Debezium change event for the notifications table, as done per record by NotificationKafkaConsumer.
+ * "envelope" is the JsonConverter output with schemas enabled (the connector default), "payload" the bare event.
+ * {@link #readTreeBaseline} is the decode the consumer used before the streaming parser: a full JsonNode tree, then
+ * treeToValue on the "after" image.
+ */
+@State(Scope.Benchmark)
+public class KafkaMessageConverterBenchmark {
+
+    @Param({"envelope", "payload"})
+    public String format;
+
+    private KafkaMessageConverter converter;
+    private ObjectMapper objectMapper;
+    private String message;
+
+    @Setup
+    public void setUp() {
+        converter = new KafkaMessageConverter();
+        objectMapper = new ObjectMapper();
+        message = "envelope".equals(format) ? SampleEvents.notificationEnvelope() : SampleEvents.notificationPayload();
+    }
+
+    @Benchmark
+    public NotificationDto toNotificationDto() throws IOException {
+        return converter.toNotificationDto(message);
+    }
+
+    @Benchmark
+    public NotificationDto readTreeBaseline() throws IOException {
+        JsonNode root = objectMapper.readTree(message);
+        JsonNode afterNode = root.has("payload") ? root.path("payload").path("after") : root.path("after");
+        if (afterNode.isMissingNode() || afterNode.isNull()) {
+            return null;
+        }
+        return objectMapper.treeToValue(afterNode, NotificationDto.class);
+    }
+}
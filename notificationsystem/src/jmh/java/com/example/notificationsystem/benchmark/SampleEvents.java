@@ -0,0 +1,47 @@
+package com.example.notificationsystem.benchmark;
+
+/**
+ * Change events shaped like the ones the Postgres connector publishes to db-notifications.public.notifications.
+ */
+final class SampleEvents {
+
+    private static final String ROW = "{\"id\":184467,\"user_id\":5123,"
+            + "\"message\":\"Your weekly report is ready: 12 new comments and 3 mentions\","
+            + "\"source\":\"reports\",\"priority\":\"NORMAL\",\"created_at\":1718000000000}";
+
+    private static final String FIELDS = "["
+            + "{\"type\":\"int64\",\"optional\":false,\"field\":\"id\"},"
+            + "{\"type\":\"int64\",\"optional\":false,\"field\":\"user_id\"},"
+            + "{\"type\":\"string\",\"optional\":true,\"field\":\"message\"},"
+            + "{\"type\":\"string\",\"optional\":true,\"field\":\"source\"},"
+            + "{\"type\":\"string\",\"optional\":true,\"field\":\"priority\"},"
+            + "{\"type\":\"int64\",\"optional\":true,\"name\":\"org.apache.kafka.connect.data.Timestamp\","
+            + "\"version\":1,\"field\":\"created_at\"}]";
+
+    private static final String SOURCE = "{\"version\":\"2.4.0.Final\",\"connector\":\"postgresql\","
+            + "\"name\":\"db-notifications\",\"ts_ms\":1718000000123,\"snapshot\":\"false\",\"db\":\"notifications\","
+            + "\"sequence\":\"[\\\"24023128\\\",\\\"24023128\\\"]\",\"schema\":\"public\",\"table\":\"notifications\","
+            + "\"txId\":747,\"lsn\":24023128,\"xmin\":null}";
+
+    private SampleEvents() {
+    }
+
+    static String notificationPayload() {
+        return "{\"before\":null,\"after\":" + ROW + ",\"source\":" + SOURCE
+                + ",\"op\":\"c\",\"ts_ms\":1718000000456,\"transaction\":null}";
+    }
+
+    static String notificationEnvelope() {
+        String schema = "{\"type\":\"struct\",\"fields\":["
+                + "{\"type\":\"struct\",\"fields\":" + FIELDS + ",\"optional\":true,"
+                + "\"name\":\"db-notifications.public.notifications.Value\",\"field\":\"before\"},"
+                + "{\"type\":\"struct\",\"fields\":" + FIELDS + ",\"optional\":true,"
+                + "\"name\":\"db-notifications.public.notifications.Value\",\"field\":\"after\"},"
+                + "{\"type\":\"struct\",\"fields\":[{\"type\":\"string\",\"optional\":false,\"field\":\"connector\"}],"
+                + "\"optional\":false,\"name\":\"io.debezium.connector.postgresql.Source\",\"field\":\"source\"},"
+                + "{\"type\":\"string\",\"optional\":false,\"field\":\"op\"},"
+                + "{\"type\":\"int64\",\"optional\":true,\"field\":\"ts_ms\"}],"
+                + "\"optional\":false,\"name\":\"db-notifications.public.notifications.Envelope\",\"version\":1}";
+        return "{\"schema\":" + schema + ",\"payload\":" + notificationPayload() + "}";
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.notificationsystem.benchmark;
+
+import com.example.notificationsystem.entity.Role;
+import com.example.notificationsystem.entity.User;
+import com.example.notificationsystem.repository.UserRepository;
+import com.example.notificationsystem.service.CustomUserDetailsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The User entity to UserDetails mapping of CustomUserDetailsService.loadUserByUsername. The repository is a
+ * stand-in returning a loaded entity, so the database round trip is not part of the measurement.
+ */
+@State(Scope.Benchmark)
+public class UserDetailsMappingBenchmark {
+
+    @Param({"1", "5"})
+    public int roleCount;
+
+    private CustomUserDetailsService userDetailsService;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        Set<Role> roles = new HashSet<>();
+        for (int i = 0; i < roleCount; i++) {
+            Role role = new Role();
+            role.setId((long) i);
+            role.setName("ROLE_" + i);
+            roles.add(role);
+        }
+        User user = new User();
+        user.setId(5123L);
+        user.setUsername("user5123");
+        user.setPassword("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z5p0Yx5Qn3m6N1c2QXxY5e5e");
+        user.setEnabled(true);
+        user.setRoles(roles);
+
+        UserRepository repository = (UserRepository) Proxy.newProxyInstance(
+                UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class},
+                (proxy, method, args) -> {
+                    if ("findByUsername".equals(method.getName())) {
+                        return Optional.of(user);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        userDetailsService = new CustomUserDetailsService();
+        Field userRepository = CustomUserDetailsService.class.getDeclaredField("userRepository");
+        userRepository.setAccessible(true);
+        userRepository.set(userDetailsService, repository);
+    }
+
+    @Benchmark
+    public UserDetails loadUserByUsername() {
+        return userDetailsService.loadUserByUsername("user5123");
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.notificationsystem.load;
+
+import com.example.notificationsystem.entity.NotificationPriority;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes change events shaped like the Postgres connector's (schemas disabled) to the notifications topic at a
+ * fixed rate. Sends are paced against the start time, so a slow send is caught up instead of lowering the rate.
+ */
+final class CdcEventInjector implements AutoCloseable {
+
+    static final String NOTIFICATIONS_TOPIC = "db-notifications.public.notifications";
+
+    private final KafkaProducer<String, String> producer;
+    private final LoadConfig config;
+    private final AtomicLong toOnlineUsers = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    CdcEventInjector(String bootstrapServers, LoadConfig config) {
+        this.producer = new KafkaProducer<>(Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers,
+                ProducerConfig.LINGER_MS_CONFIG, 1,
+                ProducerConfig.ACKS_CONFIG, "1"), new StringSerializer(), new StringSerializer());
+        this.config = config;
+    }
+
+    // Blocks until every event has been handed to the producer, returns the number sent. Ids start at firstId so
+    // that repeated runs against the same topic are not taken for replays.
+    long run(long firstId, List<Long> onlineUserIds, List<Long> offlineUserIds) {
+        long total = config.totalEvents();
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / config.rate;
+        long start = System.nanoTime();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (long id = firstId; id < firstId + total; id++) {
+            long due = start + (id - firstId) * periodNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            boolean online = offlineUserIds.isEmpty()
+                    || (!onlineUserIds.isEmpty() && random.nextDouble() < config.eventOnlineRatio);
+            List<Long> targets = online ? onlineUserIds : offlineUserIds;
+            long userId = targets.get(random.nextInt(targets.size()));
+            if (online) {
+                toOnlineUsers.incrementAndGet();
+            }
+            producer.send(new ProducerRecord<>(NOTIFICATIONS_TOPIC, "{\"id\":" + id + "}",
+                            event(id, userId, priority(random), System.currentTimeMillis())),
+                    (metadata, error) -> {
+                        if (error != null) {
+                            failed.incrementAndGet();
+                        }
+                    });
+        }
+        producer.flush();
+        return total;
+    }
+
+    long toOnlineUsers() {
+        return toOnlineUsers.get();
+    }
+
+    long failed() {
+        return failed.get();
+    }
+
+    private NotificationPriority priority(ThreadLocalRandom random) {
+        double draw = random.nextDouble();
+        if (draw < config.urgentRatio) {
+            return NotificationPriority.URGENT;
+        }
+        if (draw < config.urgentRatio + config.bulkRatio) {
+            return NotificationPriority.BULK;
+        }
+        return NotificationPriority.NORMAL;
+    }
+
+    private static String event(long id, long userId, NotificationPriority priority, long createdAt) {
+        return "{\"before\":null,\"after\":{\"id\":" + id + ",\"user_id\":" + userId
+                + ",\"message\":\"Load test notification " + id + "\",\"source\":\"load-harness\""
+                + ",\"priority\":\"" + priority + "\",\"created_at\":" + createdAt + "},"
+                + "\"source\":{\"connector\":\"postgresql\",\"name\":\"db-notifications\",\"db\":\"notificationdb\","
+                + "\"schema\":\"public\",\"table\":\"notifications\",\"ts_ms\":" + createdAt + "},"
+                + "\"op\":\"c\",\"ts_ms\":" + createdAt + ",\"transaction\":null}";
+    }
+
+    @Override
+    public void close() {
+        producer.close();
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.notificationsystem.load;
+
+import com.example.notificationsystem.entity.TempNotification;
+import com.example.notificationsystem.service.OfflineInboxStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline inbox drain: fills one inbox per configured size through the application's {@link OfflineInboxStore},
+ * then pages through it with GET /api/auth/notifications/{username} the way a reconnecting client does, and
+ * records the latency of every page and of the whole drain.
+ */
+final class InboxDrainScenario {
+
+    private static final Logger logger = LoggerFactory.getLogger(InboxDrainScenario.class);
+
+    private static final String USERNAME_PREFIX = "load-drain-";
+    private static final int SEED_CHUNK = 5_000;
+    private static final long HIGHEST_TRACKABLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final OfflineInboxStore offlineInboxStore;
+    private final int port;
+    private final int pageSize;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    InboxDrainScenario(OfflineInboxStore offlineInboxStore, int port, int pageSize) {
+        this.offlineInboxStore = offlineInboxStore;
+        this.port = port;
+        this.pageSize = pageSize;
+    }
+
+    // One report entry per inbox size, keyed by the size
+    Map<String, Object> run(List<Integer> sizes) throws IOException, InterruptedException {
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (int size : sizes) {
+            String username = USERNAME_PREFIX + size + "-" + System.nanoTime();
+            seed(username, size);
+            results.put(String.valueOf(size), drain(username, size));
+        }
+        return results;
+    }
+
+    private void seed(String username, int size) {
+        for (int from = 0; from < size; from += SEED_CHUNK) {
+            int to = Math.min(size, from + SEED_CHUNK);
+            List<TempNotification> chunk = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                TempNotification tempNotification = new TempNotification();
+                tempNotification.setUserId(-1L);
+                tempNotification.setUsername(username);
+                tempNotification.setMessage("Load test inbox entry " + i);
+                chunk.add(tempNotification);
+            }
+            offlineInboxStore.appendAll(chunk).join();
+        }
+    }
+
+    private Map<String, Object> drain(String username, int size) throws IOException, InterruptedException {
+        Histogram pages = new Histogram(HIGHEST_TRACKABLE_MILLIS, 3);
+        long drained = 0;
+        int requests = 0;
+        String cursor = "";
+        boolean hasMore = true;
+        long start = System.nanoTime();
+        while (hasMore) {
+            URI uri = URI.create("http://localhost:" + port + "/api/auth/notifications/" + username
+                    + "?limit=" + pageSize + "&after=" + URLEncoder.encode(cursor, StandardCharsets.UTF_8));
+            long pageStart = System.nanoTime();
+            HttpResponse<byte[]> response = httpClient.send(HttpRequest.newBuilder(uri).GET().build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            pages.recordValue(Math.min(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pageStart),
+                    HIGHEST_TRACKABLE_MILLIS));
+            requests++;
+            if (response.statusCode() != 200) {
+                throw new IOException("Drain of " + username + " failed with HTTP " + response.statusCode());
+            }
+            JsonNode page = objectMapper.readTree(response.body());
+            drained += page.path("notifications").size();
+            cursor = page.path("nextCursor").asText("");
+            hasMore = page.path("hasMore").asBoolean();
+        }
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        logger.info("Drained {} of {} inbox entries in {} requests, {} ms (page p99 {} ms)", drained, size,
+                requests, totalMillis, pages.getValueAtPercentile(99));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("seeded", size);
+        result.put("drained", drained);
+        result.put("requests", requests);
+        result.put("totalMillis", totalMillis);
+        Map<String, Object> pageMillis = new LinkedHashMap<>();
+        pageMillis.put("p50", pages.getValueAtPercentile(50));
+        pageMillis.put("p99", pages.getValueAtPercentile(99));
+        pageMillis.put("max", pages.getMaxValue());
+        result.put("pageMillis", pageMillis);
+        return result;
+    }
+}
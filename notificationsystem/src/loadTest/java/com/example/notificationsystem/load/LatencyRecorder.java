@@ -0,0 +1,81 @@
+package com.example.notificationsystem.load;
+
+import com.example.notificationsystem.entity.NotificationPriority;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Event-to-socket latency per priority: from the created_at the injector put into the change event to the moment
+ * a client received the frame. Only events created after the warm-up are measured.
+ */
+final class LatencyRecorder {
+
+    private static final long HIGHEST_TRACKABLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final Map<NotificationPriority, Histogram> histograms = new EnumMap<>(NotificationPriority.class);
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong measured = new AtomicLong();
+    private volatile long measureFromMillis = Long.MAX_VALUE;
+
+    LatencyRecorder() {
+        for (NotificationPriority priority : NotificationPriority.values()) {
+            histograms.put(priority, new ConcurrentHistogram(HIGHEST_TRACKABLE_MILLIS, 3));
+        }
+    }
+
+    void measureFrom(long epochMillis) {
+        measureFromMillis = epochMillis;
+    }
+
+    void record(NotificationPriority priority, long createdAtMillis, long receivedAtMillis) {
+        received.incrementAndGet();
+        if (createdAtMillis < measureFromMillis) {
+            return;
+        }
+        measured.incrementAndGet();
+        long latency = Math.min(Math.max(0, receivedAtMillis - createdAtMillis), HIGHEST_TRACKABLE_MILLIS);
+        histograms.get(priority).recordValue(latency);
+    }
+
+    long received() {
+        return received.get();
+    }
+
+    long measured() {
+        return measured.get();
+    }
+
+    Histogram all() {
+        Histogram all = new Histogram(HIGHEST_TRACKABLE_MILLIS, 3);
+        histograms.values().forEach(all::add);
+        return all;
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("all", summary(all()));
+        histograms.forEach((priority, histogram) -> {
+            if (histogram.getTotalCount() > 0) {
+                map.put(priority.name().toLowerCase(), summary(histogram));
+            }
+        });
+        return map;
+    }
+
+    private static Map<String, Object> summary(Histogram histogram) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", histogram.getTotalCount());
+        summary.put("p50", histogram.getValueAtPercentile(50));
+        summary.put("p90", histogram.getValueAtPercentile(90));
+        summary.put("p99", histogram.getValueAtPercentile(99));
+        summary.put("p999", histogram.getValueAtPercentile(99.9));
+        summary.put("max", histogram.getMaxValue());
+        return summary;
+    }
+}
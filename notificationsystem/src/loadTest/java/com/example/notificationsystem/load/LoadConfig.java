@@ -0,0 +1,135 @@
+package com.example.notificationsystem.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Harness settings, read from "load.*" system properties (passed through by the Gradle loadTest task as -Pload.*).
+ * "load.app.*" properties are handed to the application with the prefix removed,
+ * e.g. -Pload.app.notification.kafka.listener.mode=batch.
+ */
+final class LoadConfig {
+
+    private static final String PREFIX = "load.";
+    private static final String APP_PREFIX = "load.app.";
+
+    // Seeded users, and the share of them that keep a STOMP session open during the run
+    final int users = intProperty("users", 10_000);
+    final double onlineRatio = doubleProperty("online-ratio", 0.2);
+
+    // Share of the injected events that target an online user; the rest go to the offline inbox
+    final double eventOnlineRatio = doubleProperty("event-online-ratio", 0.8);
+
+    // Injection rate in events per second, and how long the rate is held. Deliveries of events created
+    // during the warm-up are counted but not measured.
+    final int rate = intProperty("rate", 2_000);
+    final int durationSeconds = intProperty("duration-s", 60);
+    final int warmupSeconds = intProperty("warmup-s", 10);
+
+    // Time left for in-flight deliveries after the last event
+    final int drainSeconds = intProperty("drain-s", 15);
+
+    // Priority mix of the events, NORMAL gets the remainder
+    final double urgentRatio = doubleProperty("urgent-ratio", 0.0);
+    final double bulkRatio = doubleProperty("bulk-ratio", 0.0);
+
+    // Handshakes in flight at once while the clients connect
+    final int connectConcurrency = intProperty("connect-concurrency", 100);
+
+    // Offline inbox sizes filled and then drained page by page over HTTP after the delivery run, "" to skip
+    final List<Integer> drainSizes = intListProperty("drain-sizes", "10,10000,100000");
+    final int drainPageSize = intProperty("drain-page-size", 500);
+
+    // Offline inbox storage engines and notification listener modes (record, batch, keyed) to compare; the whole
+    // run is repeated on a fresh application context for each combination
+    final List<String> inboxStores = stringListProperty("inbox-stores", "jpa");
+    final List<String> listenerModes = stringListProperty("listener-modes", "record");
+
+    // Regression gates, disabled when 0: the run fails above this p99 or below this delivery ratio
+    final long maxP99Millis = longProperty("max-p99-ms", 0);
+    final double minDeliveryRatio = doubleProperty("min-delivery-ratio", 0.0);
+
+    final String report = System.getProperty(PREFIX + "report", "build/results/load/report.json");
+
+    int onlineUsers() {
+        return (int) Math.round(users * onlineRatio);
+    }
+
+    long totalEvents() {
+        return (long) rate * durationSeconds;
+    }
+
+    int maxDrainSize() {
+        return drainSizes.stream().mapToInt(Integer::intValue).max().orElse(0);
+    }
+
+    // Application properties of each run, applied over the load.app.* ones
+    List<Map<String, Object>> variants() {
+        List<Map<String, Object>> variants = new ArrayList<>();
+        for (String inboxStore : inboxStores) {
+            for (String listenerMode : listenerModes) {
+                Map<String, Object> variant = new LinkedHashMap<>();
+                variant.put("notification.inbox.store", inboxStore);
+                variant.put("notification.kafka.listener.mode", listenerMode);
+                variants.add(variant);
+            }
+        }
+        return variants;
+    }
+
+    Map<String, Object> appProperties() {
+        Map<String, Object> properties = new HashMap<>();
+        System.getProperties().forEach((key, value) -> {
+            String name = String.valueOf(key);
+            if (name.startsWith(APP_PREFIX)) {
+                properties.put(name.substring(APP_PREFIX.length()), value);
+            }
+        });
+        return properties;
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("users", users);
+        map.put("onlineUsers", onlineUsers());
+        map.put("eventOnlineRatio", eventOnlineRatio);
+        map.put("rate", rate);
+        map.put("durationSeconds", durationSeconds);
+        map.put("warmupSeconds", warmupSeconds);
+        map.put("urgentRatio", urgentRatio);
+        map.put("bulkRatio", bulkRatio);
+        map.put("drainSizes", drainSizes);
+        map.put("drainPageSize", drainPageSize);
+        map.put("inboxStores", inboxStores);
+        map.put("listenerModes", listenerModes);
+        map.put("app", new LinkedHashMap<>(appProperties()));
+        return map;
+    }
+
+    private static int intProperty(String name, int defaultValue) {
+        return Integer.parseInt(System.getProperty(PREFIX + name, String.valueOf(defaultValue)));
+    }
+
+    private static long longProperty(String name, long defaultValue) {
+        return Long.parseLong(System.getProperty(PREFIX + name, String.valueOf(defaultValue)));
+    }
+
+    private static List<Integer> intListProperty(String name, String defaultValue) {
+        return stringListProperty(name, defaultValue).stream().map(Integer::valueOf).toList();
+    }
+
+    private static List<String> stringListProperty(String name, String defaultValue) {
+        return Arrays.stream(System.getProperty(PREFIX + name, defaultValue).split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .toList();
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        return Double.parseDouble(System.getProperty(PREFIX + name, String.valueOf(defaultValue)));
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.notificationsystem.load;
+
+import com.example.notificationsystem.NotificationsystemApplication;
+import com.example.notificationsystem.security.JwtUtil;
+import com.example.notificationsystem.service.OfflineInboxStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.security.core.userdetails.User;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load run: starts the application against embedded Kafka and containers for Postgres, Redis and
+ * RabbitMQ with the STOMP plugin, seeds users, connects a STOMP client for every online user, injects CDC-shaped
+ * events at the configured rate and reports throughput and event-to-socket latency percentiles as JSON. The
+ * offline inbox drain is measured afterwards, see {@link InboxDrainScenario}. With several variants (e.g.
+ * {@code -Pload.inbox-stores=jpa,redis}) the run is repeated on a fresh application context per variant against the
+ * same containers, and the report lists the runs side by side.
+ * <p>
+ * Run with {@code ./gradlew loadTest -Pload.rate=5000 -Pload.online-ratio=0.3}; see {@link LoadConfig} for the
+ * settings. The process exits with 1 when a configured regression gate fails.
+ */
+public final class LoadHarness {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadHarness.class);
+
+    private static final String USERNAME_PREFIX = "load-user-";
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(run(new LoadConfig()));
+    }
+
+    private static int run(LoadConfig config) throws Exception {
+        PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(DockerImageName.parse("postgres:14"))
+                .withDatabaseName("notificationdb");
+        GenericContainer<?> redis = new GenericContainer<>(DockerImageName.parse("redis:6.2"))
+                .withExposedPorts(6379);
+        GenericContainer<?> rabbitmq = new GenericContainer<>(DockerImageName.parse("rabbitmq:3-management"))
+                .withExposedPorts(5672, 61613)
+                .withCopyToContainer(Transferable.of("[rabbitmq_management,rabbitmq_stomp]."),
+                        "/etc/rabbitmq/enabled_plugins")
+                .waitingFor(Wait.forLogMessage(".*Server startup complete.*", 1));
+        EmbeddedKafkaBroker kafka = new EmbeddedKafkaBroker(1, false, 3,
+                CdcEventInjector.NOTIFICATIONS_TOPIC,
+                "db-notifications.public.users",
+                "db-notifications.public.broadcast_notifications");
+
+        try {
+            postgres.start();
+            redis.start();
+            rabbitmq.start();
+            kafka.afterPropertiesSet();
+
+            List<Map<String, Object>> results = new ArrayList<>();
+            long firstEventId = 1;
+            for (Map<String, Object> variant : config.variants()) {
+                logger.info("Running {}", variant);
+                results.add(runVariant(config, variant, firstEventId, postgres, redis, rabbitmq,
+                        kafka.getBrokersAsString()));
+                firstEventId += config.totalEvents();
+            }
+            return report(config, results);
+        } finally {
+            kafka.destroy();
+            rabbitmq.stop();
+            redis.stop();
+            postgres.stop();
+        }
+    }
+
+    // One delivery run and inbox drain on a fresh application context; the containers and topics are shared
+    private static Map<String, Object> runVariant(LoadConfig config, Map<String, Object> variant, long firstEventId,
+                                                  PostgreSQLContainer<?> postgres, GenericContainer<?> redis,
+                                                  GenericContainer<?> rabbitmq, String bootstrapServers)
+            throws Exception {
+        LatencyRecorder recorder = new LatencyRecorder();
+        try (ConfigurableApplicationContext context = startApplication(config, variant, postgres, redis, rabbitmq,
+                bootstrapServers);
+             StompClientFleet fleet = new StompClientFleet(recorder)) {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            awaitPartitionAssignment(context, 60);
+
+            Map<Long, String> users = seedUsers(context.getBean(JdbcTemplate.class), config.users);
+            List<Long> userIds = new ArrayList<>(users.keySet());
+            List<Long> online = userIds.subList(0, Math.min(config.onlineUsers(), userIds.size()));
+            List<Long> offline = userIds.subList(online.size(), userIds.size());
+
+            JwtUtil jwtUtil = context.getBean(JwtUtil.class);
+            Map<String, String> tokens = new LinkedHashMap<>();
+            for (Long userId : online) {
+                String username = users.get(userId);
+                tokens.put(username, jwtUtil.generateToken(User.withUsername(username)
+                        .password("")
+                        .authorities("ROLE_USER")
+                        .build()));
+            }
+            long connectStart = System.nanoTime();
+            fleet.connect(port, tokens, config.connectConcurrency, 300);
+            logger.info("Connected {} of {} clients in {} ms ({} failed)", fleet.connected(), tokens.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart), fleet.connectFailures());
+            // Lets the last subscriptions reach the broker relay before the first event
+            Thread.sleep(2000);
+
+            recorder.measureFrom(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(config.warmupSeconds));
+            try (CdcEventInjector injector = new CdcEventInjector(bootstrapServers, config)) {
+                long sent = injector.run(firstEventId, online, offline);
+                logger.info("Injected {} events, draining for {}s", sent, config.drainSeconds);
+                Thread.sleep(TimeUnit.SECONDS.toMillis(config.drainSeconds));
+                Map<String, Object> inboxDrain = new InboxDrainScenario(context.getBean(OfflineInboxStore.class),
+                        port, config.drainPageSize).run(config.drainSizes);
+                return result(config, variant, fleet, recorder, sent, injector.toOnlineUsers(), injector.failed(),
+                        inboxDrain);
+            }
+        }
+    }
+
+    // Events injected before the listeners own their partitions would be read from the committed offsets anyway,
+    // but their latency would include the group join
+    private static void awaitPartitionAssignment(ConfigurableApplicationContext context, long timeoutSeconds)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        for (MessageListenerContainer container : context.getBean(KafkaListenerEndpointRegistry.class)
+                .getListenerContainers()) {
+            while (container.isRunning()
+                    && (container.getAssignedPartitions() == null || container.getAssignedPartitions().isEmpty())) {
+                if (System.nanoTime() > deadline) {
+                    logger.warn("Listener {} has no partitions after {}s", container.getListenerId(), timeoutSeconds);
+                    return;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication(LoadConfig config,
+                                                                   Map<String, Object> variant,
+                                                                   PostgreSQLContainer<?> postgres,
+                                                                   GenericContainer<?> redis,
+                                                                   GenericContainer<?> rabbitmq,
+                                                                   String bootstrapServers) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", 0);
+        properties.put("spring.datasource.url", postgres.getJdbcUrl() + "&reWriteBatchedInserts=true");
+        properties.put("spring.datasource.username", postgres.getUsername());
+        properties.put("spring.datasource.password", postgres.getPassword());
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("spring.data.redis.host", redis.getHost());
+        properties.put("spring.data.redis.port", redis.getMappedPort(6379));
+        properties.put("spring.rabbitmq.host", rabbitmq.getHost());
+        properties.put("spring.rabbitmq.port", rabbitmq.getMappedPort(5672));
+        properties.put("spring.messaging.stomp.relay.host", rabbitmq.getHost());
+        properties.put("spring.messaging.stomp.relay.port", rabbitmq.getMappedPort(61613));
+        properties.put("spring.kafka.bootstrap-servers", bootstrapServers);
+        properties.put("notification.node.id", "load-harness");
+        // Redis inboxes are capped streams; the largest drained inbox has to fit
+        properties.put("notification.inbox.redis.max-length", Math.max(config.maxDrainSize(), 10_000));
+        // The per-message DEBUG logging of the default profile would dominate the measurement
+        for (String category : List.of("org.springframework", "org.springframework.web", "org.springframework.web.socket",
+                "org.springframework.security", "com.example.notificationsystem",
+                "com.example.notificationsystem.security")) {
+            properties.put("logging.level." + category, "WARN");
+        }
+        properties.putAll(config.appProperties());
+        properties.putAll(variant);
+
+        // Added first so it wins over application.properties, unlike SpringApplicationBuilder.properties
+        return new SpringApplicationBuilder(NotificationsystemApplication.class)
+                .initializers(context -> context.getEnvironment().getPropertySources()
+                        .addFirst(new MapPropertySource("loadHarness", properties)))
+                .run();
+    }
+
+    // The schema is created by Hibernate on startup, the users by the first run; returns user id to username in
+    // id order
+    private static Map<Long, String> seedUsers(JdbcTemplate jdbcTemplate, int users) {
+        Integer existing = jdbcTemplate.queryForObject("select count(*) from users where username like ?",
+                Integer.class, USERNAME_PREFIX + "%");
+        if (existing == null || existing == 0) {
+            List<Object[]> rows = new ArrayList<>(users);
+            for (int i = 0; i < users; i++) {
+                rows.add(new Object[]{USERNAME_PREFIX + i});
+            }
+            jdbcTemplate.batchUpdate("insert into users (username, password, enabled) values (?, '', true)", rows);
+        }
+        Map<Long, String> seeded = new LinkedHashMap<>();
+        jdbcTemplate.query("select id, username from users where username like ? order by id",
+                (RowCallbackHandler) row -> seeded.put(row.getLong("id"), row.getString("username")),
+                USERNAME_PREFIX + "%");
+        return seeded;
+    }
+
+    private static Map<String, Object> result(LoadConfig config, Map<String, Object> variant, StompClientFleet fleet,
+                                              LatencyRecorder recorder, long sent, long toOnlineUsers,
+                                              long failedSends, Map<String, Object> inboxDrain) {
+        int measuredSeconds = Math.max(1, config.durationSeconds - config.warmupSeconds);
+        double throughput = (double) recorder.measured() / measuredSeconds;
+        double deliveryRatio = toOnlineUsers == 0 ? 1.0 : (double) recorder.received() / toOnlineUsers;
+        Histogram all = recorder.all();
+        logger.info("{}: {} deliveries/s, p50 {} ms, p99 {} ms, p99.9 {} ms, delivery ratio {}", variant,
+                String.format("%.1f", throughput), all.getValueAtPercentile(50), all.getValueAtPercentile(99),
+                all.getValueAtPercentile(99.9), String.format("%.4f", deliveryRatio));
+
+        Map<String, Object> events = new LinkedHashMap<>();
+        events.put("sent", sent);
+        events.put("failedSends", failedSends);
+        events.put("toOnlineUsers", toOnlineUsers);
+
+        Map<String, Object> clients = new LinkedHashMap<>();
+        clients.put("connected", fleet.connected());
+        clients.put("connectFailures", fleet.connectFailures());
+        clients.put("unreadableFrames", fleet.unreadableFrames());
+
+        Map<String, Object> deliveries = new LinkedHashMap<>();
+        deliveries.put("received", recorder.received());
+        deliveries.put("measured", recorder.measured());
+        deliveries.put("deliveryRatio", deliveryRatio);
+        deliveries.put("throughputPerSecond", throughput);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("app", variant);
+        result.put("events", events);
+        result.put("clients", clients);
+        result.put("deliveries", deliveries);
+        result.put("latencyMillis", recorder.toMap());
+        result.put("inboxDrain", inboxDrain);
+        return result;
+    }
+
+    // Writes the runs side by side; the gates apply to every run
+    @SuppressWarnings("unchecked")
+    private static int report(LoadConfig config, List<Map<String, Object>> results) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", config.toMap());
+        report.put("runs", results);
+
+        File file = new File(config.report);
+        file.getParentFile().mkdirs();
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file, report);
+        logger.info("Report written to {}", file.getAbsolutePath());
+
+        int exitCode = 0;
+        for (Map<String, Object> result : results) {
+            Map<String, Object> deliveries = (Map<String, Object>) result.get("deliveries");
+            Map<String, Object> latency = (Map<String, Object>) ((Map<String, Object>) result.get("latencyMillis"))
+                    .get("all");
+            long p99 = (long) latency.get("p99");
+            double deliveryRatio = (double) deliveries.get("deliveryRatio");
+            if (config.maxP99Millis > 0 && p99 > config.maxP99Millis) {
+                logger.error("{}: p99 of {} ms is above the {} ms gate", result.get("app"), p99, config.maxP99Millis);
+                exitCode = 1;
+            }
+            if (deliveryRatio < config.minDeliveryRatio) {
+                logger.error("{}: delivery ratio {} is below the {} gate", result.get("app"), deliveryRatio,
+                        config.minDeliveryRatio);
+                exitCode = 1;
+            }
+        }
+        return exitCode;
+    }
+}
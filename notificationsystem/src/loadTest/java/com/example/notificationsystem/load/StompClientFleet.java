@@ -0,0 +1,131 @@
+package com.example.notificationsystem.load;
+
+import com.example.notificationsystem.entity.NotificationPriority;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opens one SockJS/STOMP session per online user against /ws, the same way the web client does (JWT in the
+ * Authorization query parameter), subscribes to the user's notification queue and records every received
+ * notification in the {@link LatencyRecorder}. Coalesced frames carry an array and count once per notification.
+ */
+final class StompClientFleet implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(StompClientFleet.class);
+
+    private static final String DESTINATION = "/user/queue/notifications";
+
+    private final WebSocketStompClient stompClient;
+    private final LatencyRecorder recorder;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Queue<StompSession> sessions = new ConcurrentLinkedQueue<>();
+    private final AtomicLong connectFailures = new AtomicLong();
+    private final AtomicLong unreadableFrames = new AtomicLong();
+
+    StompClientFleet(LatencyRecorder recorder) {
+        this.stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        this.stompClient.setDefaultHeartbeat(new long[]{0, 0});
+        this.recorder = recorder;
+    }
+
+    // Connects a session per token, keyed by username; returns once all handshakes finished or timed out
+    void connect(int port, Map<String, String> tokens, int concurrency, long timeoutSeconds)
+            throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        CountDownLatch subscribed = new CountDownLatch(tokens.size());
+        for (Map.Entry<String, String> user : tokens.entrySet()) {
+            inFlight.acquire();
+            URI uri = URI.create("http://localhost:" + port + "/ws?Authorization=Bearer%20" + user.getValue());
+            stompClient.connectAsync(uri, null, null, new StompSessionHandlerAdapter() {
+                @Override
+                public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+                    session.subscribe(DESTINATION, frameHandler);
+                    sessions.add(session);
+                    subscribed.countDown();
+                }
+            }).whenComplete((session, error) -> {
+                inFlight.release();
+                if (error != null) {
+                    connectFailures.incrementAndGet();
+                    subscribed.countDown();
+                    logger.warn("Client {} failed to connect: {}", user.getKey(), error.toString());
+                }
+            });
+        }
+        if (!subscribed.await(timeoutSeconds, TimeUnit.SECONDS)) {
+            logger.warn("{} clients still connecting after {}s", subscribed.getCount(), timeoutSeconds);
+        }
+    }
+
+    int connected() {
+        return sessions.size();
+    }
+
+    long connectFailures() {
+        return connectFailures.get();
+    }
+
+    long unreadableFrames() {
+        return unreadableFrames.get();
+    }
+
+    private final StompFrameHandler frameHandler = new StompFrameHandler() {
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return byte[].class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            long receivedAt = System.currentTimeMillis();
+            try {
+                JsonNode body = objectMapper.readTree((byte[]) payload);
+                if (body.isArray()) {
+                    body.forEach(notification -> record(notification, receivedAt));
+                } else {
+                    record(body, receivedAt);
+                }
+            } catch (IOException e) {
+                unreadableFrames.incrementAndGet();
+            }
+        }
+    };
+
+    private void record(JsonNode notification, long receivedAt) {
+        NotificationPriority priority = NotificationPriority.parse(notification.path("priority").asText(null));
+        recorder.record(priority, notification.path("created_at").asLong(), receivedAt);
+    }
+
+    @Override
+    public void close() {
+        for (StompSession session : sessions) {
+            if (session.isConnected()) {
+                session.disconnect();
+            }
+        }
+        stompClient.stop();
+    }
+}
@@ -1,14 +1,26 @@
 package com.example.notificationsystem.config;
 
+import com.example.notificationsystem.consumer.NotificationKafkaConsumer;
+import com.example.notificationsystem.service.NotificationDeduplicator;
+import com.example.notificationsystem.util.KeyOrderedExecutor;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
 
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ContainerProperties;
+
+import java.util.Collection;
+import java.util.concurrent.Executors;
 
 @Configuration
 @EnableKafka
@@ -20,6 +32,12 @@ public class KafkaConfig {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private NotificationDeduplicator notificationDeduplicator;
+
+    @Value("${" + VirtualThreadConfig.ENABLED_PROPERTY + ":false}")
+    private boolean virtualThreads;
+
 
     @Bean
     public ConsumerFactory<Object, Object> consumerFactory(KafkaProperties kafkaProperties) {
@@ -30,4 +48,91 @@ public class KafkaConfig {
         return new DefaultKafkaConsumerFactory<>(properties);
     }
 
+    // Record listener for the notifications topic. Offsets are acknowledged manually once a record is
+    // published or its offline inbox row is flushed, which can happen out of order (asyncAcks).
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> notificationKafkaListenerContainerFactory(
+            ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        factory.getContainerProperties().setConsumerRebalanceListener(dedupRebalanceListener());
+        configureTaskExecutor(factory, "kafka-notifications-");
+        return factory;
+    }
+
+    // Container factory for listeners that take a whole poll (List<ConsumerRecord>) at once.
+    // The batch size is bounded by spring.kafka.consumer.max-poll-records; batches are acknowledged
+    // in order by the offline inbox writer once their rows are flushed.
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> batchKafkaListenerContainerFactory(
+            ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setConsumerRebalanceListener(dedupRebalanceListener());
+        configureTaskExecutor(factory, "kafka-batch-");
+        return factory;
+    }
+
+    // Per-node groups of the users and broadcast topics: MANUAL without a single ack never commits,
+    // see UserChangeKafkaConsumer and BroadcastKafkaConsumer.consumeOnThisNode
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> perNodeKafkaListenerContainerFactory(
+            ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        configureTaskExecutor(factory, "kafka-per-node-");
+        return factory;
+    }
+
+    // Worker pool for notification.kafka.listener.mode=keyed: records of one partition are processed in parallel,
+    // in order per user_id. The container's async acks commit offsets only up to the lowest unfinished record.
+    // Submitting blocks the consumer thread once max-in-flight records are unfinished.
+    @Bean(destroyMethod = "shutdown")
+    public KeyOrderedExecutor notificationKeyedExecutor(@Value("${notification.kafka.keyed.workers:16}") int workers,
+                                                        @Value("${notification.kafka.keyed.max-in-flight:1000}")
+                                                        int maxInFlight) {
+        return new KeyOrderedExecutor(Executors.newFixedThreadPool(workers,
+                VirtualThreadConfig.threadFactory("notification-keyed-", virtualThreads)), maxInFlight);
+    }
+
+    // Hands the dedup window over with notifications partitions: the old owner mirrors its marks to Redis before
+    // the revoke commits, the new owner merges them before it reads the partition's records. Marks of records the
+    // old owner finishes after the revoke are not seen, so those can still be delivered twice.
+    private ConsumerAwareRebalanceListener dedupRebalanceListener() {
+        return new ConsumerAwareRebalanceListener() {
+            @Override
+            public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer,
+                                                        Collection<TopicPartition> partitions) {
+                if (hasNotificationsPartition(partitions)) {
+                    notificationDeduplicator.flush();
+                }
+            }
+
+            @Override
+            public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                if (hasNotificationsPartition(partitions)) {
+                    notificationDeduplicator.load();
+                }
+            }
+        };
+    }
+
+    private static boolean hasNotificationsPartition(Collection<TopicPartition> partitions) {
+        return partitions.stream()
+                .anyMatch(partition -> NotificationKafkaConsumer.NOTIFICATIONS_TOPIC.equals(partition.topic()));
+    }
+
+    // Runs the consumer threads as virtual threads with notification.threads.virtual=true
+    private void configureTaskExecutor(ConcurrentKafkaListenerContainerFactory<Object, Object> factory,
+                                       String threadNamePrefix) {
+        if (virtualThreads) {
+            factory.getContainerProperties().setListenerTaskExecutor(VirtualThreadConfig.executor(threadNamePrefix));
+        }
+    }
+
 }
@@ -0,0 +1,49 @@
+package com.example.notificationsystem.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.UUID;
+
+/**
+ * Identity of this instance: notification.node.id when it is set, otherwise the host name, so that a restarted
+ * node keeps its id. Only a host whose name cannot be resolved gets a random id, chosen once at startup.
+ * Presence, the node queue with its binding and the node queue listener all read the id from this bean, so they
+ * agree on it; a placeholder such as ${random.uuid} would resolve to a new value at every injection point.
+ */
+@Component
+public class NodeIdentity {
+
+    private static final Logger logger = LoggerFactory.getLogger(NodeIdentity.class);
+
+    private static final String NODE_QUEUE_PREFIX = "notificationQueue.";
+
+    private final String id;
+
+    public NodeIdentity(@Value("${notification.node.id:}") String configuredId) {
+        this.id = configuredId.isBlank() ? hostName() : configuredId;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            String id = UUID.randomUUID().toString();
+            logger.warn("notification.node.id is unset and the host name is unknown, using the random node id {}", id);
+            return id;
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    // This node's queue in node routing mode
+    public String getQueueName() {
+        return NODE_QUEUE_PREFIX + id;
+    }
+}
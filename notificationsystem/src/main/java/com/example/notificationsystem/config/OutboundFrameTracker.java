@@ -0,0 +1,133 @@
+package com.example.notificationsystem.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the STOMP MESSAGE frames of every WebSocket session twice: when they are sent to the client outbound
+ * channel and when they are written to the session, i.e. once they have left Spring's per-session send buffer.
+ * The difference is the session's backlog, which lets a sender hold back while a client is slow and find out when
+ * its frames are out.
+ * <p>
+ * Registered as an interceptor of the client outbound channel and as a decorator of the WebSocket handler, see
+ * WebSocketConfig. With SockJS, "written" means handed to the SockJS session, which may still queue frames for a
+ * polling client.
+ */
+@Component
+public class OutboundFrameTracker implements ChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    private static final byte[] MESSAGE_COMMAND = "MESSAGE\n".getBytes(StandardCharsets.UTF_8);
+
+    private final Map<String, Counts> sessions = new ConcurrentHashMap<>();
+
+    // Number of frames sent to the outbound channel for the session so far, 0 for an unknown session
+    public long queued(String sessionId) {
+        Counts counts = sessions.get(sessionId);
+        return counts == null ? 0 : counts.queued.get();
+    }
+
+    // Frames sent to the outbound channel and not written yet
+    public long pending(String sessionId) {
+        Counts counts = sessions.get(sessionId);
+        return counts == null ? 0 : counts.queued.get() - counts.written.get();
+    }
+
+    // True once as many frames as queued(sessionId) returned have been written; false for a closed session
+    public boolean isWritten(String sessionId, long queued) {
+        Counts counts = sessions.get(sessionId);
+        return counts != null && counts.written.get() >= queued;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+            String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+            Counts counts = sessionId == null ? null : sessions.get(sessionId);
+            if (counts != null) {
+                counts.queued.incrementAndGet();
+            }
+        }
+        return message;
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                Counts counts = new Counts();
+                sessions.put(session.getId(), counts);
+                super.afterConnectionEstablished(new CountingSession(session, counts));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    private static boolean isMessageFrame(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage text) {
+            return text.getPayload().startsWith("MESSAGE\n");
+        }
+        if (message instanceof BinaryMessage binary) {
+            ByteBuffer payload = binary.getPayload().duplicate();
+            if (payload.remaining() < MESSAGE_COMMAND.length) {
+                return false;
+            }
+            for (byte expected : MESSAGE_COMMAND) {
+                if (payload.get() != expected) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static final class Counts {
+        private final AtomicLong queued = new AtomicLong();
+        private final AtomicLong written = new AtomicLong();
+    }
+
+    // Sits below Spring's ConcurrentWebSocketSessionDecorator, which hands it one frame at a time from its buffer
+    private static final class CountingSession extends WebSocketSessionDecorator {
+
+        private final Counts counts;
+
+        private CountingSession(WebSocketSession session, Counts counts) {
+            super(session);
+            this.counts = counts;
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            super.sendMessage(message);
+            if (isMessageFrame(message)) {
+                counts.written.incrementAndGet();
+            }
+        }
+    }
+}
@@ -1,11 +1,19 @@
 package com.example.notificationsystem.config;
 
+import com.example.notificationsystem.service.NotificationPublisher;
+import com.example.notificationsystem.util.NotificationBinaryMessageConverter;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.core.RabbitAdmin;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 
 
@@ -13,9 +21,11 @@ import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 public class RabbitMQConfig {
 
     @Bean
-    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
+    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory, MessageConverter notificationMessageConverter) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
-        rabbitTemplate.setMessageConverter(jackson2JsonMessageConverter());
+        rabbitTemplate.setMessageConverter(notificationMessageConverter);
+        // Unroutable messages come back to RabbitConfirmPublisher instead of being dropped
+        rabbitTemplate.setMandatory(true);
         return rabbitTemplate;
     }
 
@@ -24,6 +34,34 @@ public class RabbitMQConfig {
         return new Jackson2JsonMessageConverter();
     }
 
+    // Reads both codecs by content type; notification.rabbit.codec=binary switches the writers once all nodes read it.
+    // The binary layout is version 2, which keeps the priority; notification.rabbit.binary-version=1 is for rolling
+    // upgrades from nodes that cannot read it yet.
+    // Primary so that Boot's listener container configurer picks it over the Jackson converter.
+    @Bean
+    @Primary
+    public MessageConverter notificationMessageConverter(Jackson2JsonMessageConverter jackson2JsonMessageConverter,
+                                                         @Value("${notification.rabbit.codec:json}") String codec,
+                                                         @Value("${notification.rabbit.binary-version:2}")
+                                                         int binaryVersion) {
+        return new NotificationBinaryMessageConverter(jackson2JsonMessageConverter, "binary".equals(codec),
+                binaryVersion);
+    }
+
+    // Replaces Boot's default factory for the @RabbitListener methods, keeping its spring.rabbitmq.listener settings
+    @Bean
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${" + VirtualThreadConfig.ENABLED_PROPERTY + ":false}") boolean virtualThreads) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        if (virtualThreads) {
+            factory.setTaskExecutor(VirtualThreadConfig.executor("rabbit-listener-"));
+        }
+        return factory;
+    }
+
     @Bean
     public Exchange notificationsExchange() {
         return ExchangeBuilder.directExchange("notificationsExchange")
@@ -44,6 +82,67 @@ public class RabbitMQConfig {
                 .noargs();
     }
 
+    // Priority lanes: NORMAL keeps notificationQueue, URGENT and BULK get their own queues and listener pools
+    @Bean
+    public Queue urgentNotificationQueue() {
+        return new Queue("notificationQueue.urgent", true);
+    }
+
+    @Bean
+    public Binding urgentBinding(Queue urgentNotificationQueue, Exchange notificationsExchange) {
+        return BindingBuilder.bind(urgentNotificationQueue)
+                .to(notificationsExchange)
+                .with(NotificationPublisher.URGENT_ROUTING_KEY)
+                .noargs();
+    }
+
+    @Bean
+    public Queue bulkNotificationQueue() {
+        return new Queue("notificationQueue.bulk", true);
+    }
+
+    @Bean
+    public Binding bulkBinding(Queue bulkNotificationQueue, Exchange notificationsExchange) {
+        return BindingBuilder.bind(bulkNotificationQueue)
+                .to(notificationsExchange)
+                .with(NotificationPublisher.BULK_ROUTING_KEY)
+                .noargs();
+    }
+
+    // Low-priority lane for rate-limited notifications, see NotificationRateLimiter
+    @Bean
+    public Queue lowPriorityNotificationQueue() {
+        return new Queue("notificationQueue.low", true);
+    }
+
+    @Bean
+    public Binding lowPriorityBinding(Queue lowPriorityNotificationQueue, Exchange notificationsExchange) {
+        return BindingBuilder.bind(lowPriorityNotificationQueue)
+                .to(notificationsExchange)
+                .with(NotificationPublisher.LOW_PRIORITY_ROUTING_KEY)
+                .noargs();
+    }
+
+    // Node-affine routing: a queue per instance, bound with "node.<nodeId>". Non-durable and expiring
+    // once its node has been gone for notification.routing.node-queue-expiry-ms.
+    @Bean
+    @ConditionalOnProperty(name = "notification.routing.mode", havingValue = "node")
+    public Queue nodeNotificationQueue(NodeIdentity nodeIdentity,
+                                       @Value("${notification.routing.node-queue-expiry-ms:60000}") int expiryMs) {
+        return QueueBuilder.nonDurable(nodeIdentity.getQueueName())
+                .expires(expiryMs)
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "notification.routing.mode", havingValue = "node")
+    public Binding nodeBinding(Queue nodeNotificationQueue, Exchange notificationsExchange,
+                               NodeIdentity nodeIdentity) {
+        return BindingBuilder.bind(nodeNotificationQueue)
+                .to(notificationsExchange)
+                .with(NotificationPublisher.nodeRoutingKey(nodeIdentity.getId()))
+                .noargs();
+    }
 
     @Bean
     public RabbitAdmin rabbitAdmin(ConnectionFactory connectionFactory) {
@@ -1,9 +1,13 @@
 package com.example.notificationsystem.config;
 
+import com.example.notificationsystem.security.TokenDenylist;
+import com.example.notificationsystem.service.PresenceService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
@@ -15,7 +19,20 @@ public class RedisConfig {
         template.setConnectionFactory(connectionFactory);
         template.setKeySerializer(new StringRedisSerializer());
         template.setValueSerializer(new StringRedisSerializer());
+        template.setHashKeySerializer(new StringRedisSerializer());
+        template.setHashValueSerializer(new StringRedisSerializer());
         return template;
     }
-}
 
+    // Delivers presence change events to this node's near-cache and token revocations to its denylist
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       PresenceService presenceService,
+                                                                       TokenDenylist tokenDenylist) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(presenceService, new ChannelTopic(PresenceService.PRESENCE_CHANNEL));
+        container.addMessageListener(tokenDenylist, new ChannelTopic(TokenDenylist.REVOCATION_CHANNEL));
+        return container;
+    }
+}
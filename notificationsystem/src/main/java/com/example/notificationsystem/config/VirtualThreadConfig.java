@@ -0,0 +1,59 @@
+package com.example.notificationsystem.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Opt-in virtual-thread mode, enabled with notification.threads.virtual=true.
+ * <p>
+ * Spring Boot 3.1 has no spring.threads.virtual.enabled, so each blocking stage is switched explicitly:
+ * Tomcat here, the Kafka listener containers and the keyed worker pool in {@link KafkaConfig}, the Rabbit listener
+ * container factory in {@link RabbitMQConfig} and the STOMP client channels in {@link WebSocketConfig}. The services'
+ * own pools and schedulers (inbox replay, coalescer, digester, publish retries) take their threads from
+ * {@link #threadFactory}. Only the offline inbox writer's single flusher stays a platform thread.
+ */
+@Configuration
+public class VirtualThreadConfig {
+
+    public static final String ENABLED_PROPERTY = "notification.threads.virtual";
+
+    // Runs every servlet request on its own virtual thread instead of Tomcat's bounded worker pool
+    @Bean
+    @ConditionalOnProperty(name = ENABLED_PROPERTY, havingValue = "true")
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    // One new virtual thread per task
+    static AsyncTaskExecutor executor(String threadNamePrefix) {
+        return new ConcurrentTaskExecutor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(threadNamePrefix, 0).factory()));
+    }
+
+    // Named threads for a service's own pool or scheduler, virtual when notification.threads.virtual=true.
+    // Pools keep their size, so a fixed pool still bounds how many of its tasks run at once.
+    public static ThreadFactory threadFactory(String threadNamePrefix, boolean virtual) {
+        return virtual
+                ? Thread.ofVirtual().name(threadNamePrefix, 0).factory()
+                : Thread.ofPlatform().name(threadNamePrefix, 0).factory();
+    }
+
+    // ChannelRegistration only accepts a ThreadPoolTaskExecutor, so the pool keeps its size limit
+    // but its threads are virtual and no longer tie up a carrier while blocked
+    static ThreadPoolTaskExecutor pooledExecutor(String threadNamePrefix, int poolSize) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadFactory(Thread.ofVirtual().name(threadNamePrefix, 0).factory());
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setAllowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
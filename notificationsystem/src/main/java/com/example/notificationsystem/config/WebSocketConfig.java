@@ -2,12 +2,17 @@ package com.example.notificationsystem.config;
 
 import com.example.notificationsystem.security.JwtHandshakeInterceptor;
 import com.example.notificationsystem.security.JwtUtil;
+import com.example.notificationsystem.security.TokenDenylist;
+import com.example.notificationsystem.security.TopicSubscriptionInterceptor;
+import com.example.notificationsystem.service.CustomUserDetailsService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 import org.springframework.web.socket.server.support.HttpSessionHandshakeInterceptor;
 
 @Configuration
@@ -26,10 +31,27 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Value("${spring.rabbitmq.password}")
     private String rabbitMQPassword;
 
+    @Value("${" + VirtualThreadConfig.ENABLED_PROPERTY + ":false}")
+    private boolean virtualThreads;
+
+    @Value("${notification.threads.stomp-pool-size:256}")
+    private int stompPoolSize;
+
     private final JwtUtil jwtUtil;
+    private final TokenDenylist tokenDenylist;
+    private final TopicSubscriptionInterceptor topicSubscriptionInterceptor;
+    private final OutboundFrameTracker outboundFrameTracker;
+    private final CustomUserDetailsService userDetailsService;
 
-    public WebSocketConfig(JwtUtil jwtUtil) {
+    public WebSocketConfig(JwtUtil jwtUtil, TokenDenylist tokenDenylist,
+                           TopicSubscriptionInterceptor topicSubscriptionInterceptor,
+                           OutboundFrameTracker outboundFrameTracker,
+                           CustomUserDetailsService userDetailsService) {
         this.jwtUtil = jwtUtil;
+        this.tokenDenylist = tokenDenylist;
+        this.topicSubscriptionInterceptor = topicSubscriptionInterceptor;
+        this.outboundFrameTracker = outboundFrameTracker;
+        this.userDetailsService = userDetailsService;
     }
 
     @Override
@@ -55,7 +77,30 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
-                .addInterceptors(new JwtHandshakeInterceptor(jwtUtil))  // Enable JWT validation in handshake
+                .addInterceptors(new JwtHandshakeInterceptor(jwtUtil, tokenDenylist, userDetailsService))  // Enable JWT validation in handshake
                 .withSockJS();
     }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Only members may subscribe to the group and role broadcast topics
+        registration.interceptors(topicSubscriptionInterceptor);
+        if (virtualThreads) {
+            registration.taskExecutor(VirtualThreadConfig.pooledExecutor("stomp-inbound-", stompPoolSize));
+        }
+    }
+
+    // Per-session send backlog, used by the inbox replay for flow control
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.addDecoratorFactory(outboundFrameTracker);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(outboundFrameTracker);
+        if (virtualThreads) {
+            registration.taskExecutor(VirtualThreadConfig.pooledExecutor("stomp-outbound-", stompPoolSize));
+        }
+    }
 }
@@ -1,44 +1,92 @@
 package com.example.notificationsystem.config;
 
-import com.example.notificationsystem.consumer.NotificationKafkaConsumer;
+import com.example.notificationsystem.service.InboxReplayService;
+import com.example.notificationsystem.service.LocalNotificationDelivery;
+import com.example.notificationsystem.service.PresenceService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
-import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.security.Principal;
+import java.util.Map;
 
 @Component
 public class WebSocketEventListener {
 
     private static final Logger logger = LoggerFactory.getLogger(WebSocketEventListener.class);
 
-    public WebSocketEventListener() {
+    // Optional STOMP CONNECT header identifying the client device
+    private static final String DEVICE_HEADER = "device";
+
+    private final PresenceService presenceService;
+    private final InboxReplayService inboxReplayService;
+
+    public WebSocketEventListener(PresenceService presenceService, InboxReplayService inboxReplayService) {
+        this.presenceService = presenceService;
+        this.inboxReplayService = inboxReplayService;
     }
 
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectedEvent event) {
         StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
-        Authentication authentication = (Authentication) headerAccessor.getUser();
+        String username = resolveUsername(headerAccessor);
 
-        if (authentication != null) {
-            String username = authentication.getName(); // Extract username from the authentication object
+        if (username != null) {
+            String device = resolveDevice(headerAccessor);
+            presenceService.sessionConnected(username, headerAccessor.getSessionId(), device);
+            logger.info("User connected: {} (session {}, device {})", username, headerAccessor.getSessionId(), device);
+        }
+    }
 
-            if (username != null) {
-                logger.info("User connected: {}" , username);
-            }
+    // The backlog is pushed on SUBSCRIBE rather than CONNECT, frames sent before it would be dropped by the client
+    @EventListener
+    public void handleWebSocketSubscribeListener(SessionSubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (!LocalNotificationDelivery.USER_DESTINATION.equals(headerAccessor.getDestination())) {
+            return;
+        }
+        String username = resolveUsername(headerAccessor);
+        if (username != null) {
+            inboxReplayService.onSubscribe(username, headerAccessor.getSessionId(), headerAccessor.getSubscriptionId());
         }
     }
 
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
-        StompHeaderAccessor headers = StompHeaderAccessor.wrap(event.getMessage());
-        String sessionId = headers.getSessionId();
-        // Handle connection disconnection
-        System.out.println("WebSocket connection closed: " + sessionId);
+        String sessionId = event.getSessionId();
+        presenceService.sessionDisconnected(sessionId);
+        logger.info("WebSocket connection closed: {}", sessionId);
+    }
+
+    // Prefers the authenticated principal, falls back to the username stored by JwtHandshakeInterceptor
+    private String resolveUsername(StompHeaderAccessor headerAccessor) {
+        Principal user = headerAccessor.getUser();
+        if (user != null && user.getName() != null) {
+            return user.getName();
+        }
+        Map<String, Object> sessionAttributes = headerAccessor.getSessionAttributes();
+        if (sessionAttributes != null && sessionAttributes.get("username") instanceof String username) {
+            return username;
+        }
+        return null;
+    }
+
+    // The CONNECTED frame carries the original CONNECT frame, which holds the client's headers
+    private String resolveDevice(StompHeaderAccessor headerAccessor) {
+        Message<?> connectMessage = (Message<?>) headerAccessor.getHeader(SimpMessageHeaderAccessor.CONNECT_MESSAGE_HEADER);
+        if (connectMessage != null) {
+            String device = StompHeaderAccessor.wrap(connectMessage).getFirstNativeHeader(DEVICE_HEADER);
+            if (device != null && !device.isBlank()) {
+                return device;
+            }
+        }
+        return "unknown";
     }
 }
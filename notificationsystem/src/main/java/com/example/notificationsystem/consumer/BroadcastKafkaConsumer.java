@@ -0,0 +1,81 @@
+package com.example.notificationsystem.consumer;
+
+import com.example.notificationsystem.entity.BroadcastNotificationDto;
+import com.example.notificationsystem.service.FanOutService;
+import com.example.notificationsystem.util.KafkaMessageConverter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+
+/**
+ * Consumes group, role and all-users notifications. One node of the shared group sends the topic message and
+ * stores the offline recipients' inboxes, and commits the offset once they are written. Every node also reads the
+ * topic in a group of its own, named after its node id like the user cache's, to store the broadcast for recipients
+ * connected to it without a subscription to the topic.
+ */
+@Service
+public class BroadcastKafkaConsumer {
+
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastKafkaConsumer.class);
+
+    public static final String BROADCASTS_TOPIC = "db-notifications.public.broadcast_notifications";
+
+    @Autowired
+    private FanOutService fanOutService;
+
+    @Autowired
+    private KafkaMessageConverter kafkaMessageConverter;
+
+    @Autowired
+    private NotificationDeadLetterPublisher deadLetterPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @KafkaListener(id = "broadcastListener", idIsGroup = false, topics = BROADCASTS_TOPIC,
+            containerFactory = "notificationKafkaListenerContainerFactory")
+    public void consume(ConsumerRecord<String, String> record, Acknowledgment acknowledgment) throws IOException {
+        BroadcastNotificationDto broadcast = kafkaMessageConverter.toBroadcastNotificationDto(record.value());
+        if (broadcast == null) {
+            acknowledgment.acknowledge();
+            return;
+        }
+        logger.info("Received broadcast: {}", broadcast);
+        fanOutService.fanOut(broadcast).whenComplete((ignored, error) -> {
+            if (error == null) {
+                acknowledgment.acknowledge();
+                return;
+            }
+            // The inbox pages ran out of retries. A replay from the DLT sends the topic message again as well.
+            logger.error("Failed to store the offline inboxes of broadcast {}, dead-lettering it", broadcast.getId(),
+                    error);
+            meterRegistry.counter("notifications.fanout.failed").increment();
+            deadLetterPublisher.publish(record, error).thenRun(acknowledgment::acknowledge);
+        });
+    }
+
+    // Reads from the latest offset and never commits: a restarted node has none of the sessions it saw before
+    @KafkaListener(topics = BROADCASTS_TOPIC,
+            groupId = "#{'broadcast-local-' + @nodeIdentity.id}",
+            containerFactory = "perNodeKafkaListenerContainerFactory",
+            properties = {"auto.offset.reset=latest", "enable.auto.commit=false"})
+    public void consumeOnThisNode(String message) throws IOException {
+        BroadcastNotificationDto broadcast = kafkaMessageConverter.toBroadcastNotificationDto(message);
+        if (broadcast == null) {
+            return;
+        }
+        fanOutService.storeForUnsubscribed(broadcast).whenComplete((ignored, error) -> {
+            if (error != null) {
+                logger.error("Failed to store broadcast {} for unsubscribed local users", broadcast.getId(), error);
+                meterRegistry.counter("notifications.fanout.failed").increment();
+            }
+        });
+    }
+}
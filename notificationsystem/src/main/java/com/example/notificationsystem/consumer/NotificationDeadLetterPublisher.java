@@ -0,0 +1,81 @@
+package com.example.notificationsystem.consumer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Sends records whose processing failed asynchronously, after the listener had returned, to {@code <topic>.DLT},
+ * the dead letter topic spring-kafka's DeadLetterPublishingRecoverer would use, with its original topic, partition,
+ * offset and exception headers. The producer picks the partition, so the DLT may have fewer partitions than the
+ * source topic.
+ * <p>
+ * Listeners acknowledge such a record only once this send has completed; if it fails too the offset stays
+ * uncommitted and the record is consumed again after the next rebalance or restart.
+ */
+@Component
+public class NotificationDeadLetterPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationDeadLetterPublisher.class);
+
+    public static final String SUFFIX = ".DLT";
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final Counter deadLettered;
+
+    public NotificationDeadLetterPublisher(KafkaTemplate<String, String> kafkaTemplate, MeterRegistry meterRegistry) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.deadLettered = meterRegistry.counter("notifications.consume.dead-lettered");
+    }
+
+    // Completes once every record is stored in the DLT
+    public CompletableFuture<Void> publishAll(List<ConsumerRecord<String, String>> records, Throwable cause) {
+        return CompletableFuture.allOf(records.stream()
+                .map(record -> publish(record, cause))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    public CompletableFuture<Void> publish(ConsumerRecord<String, String> record, Throwable cause) {
+        Throwable error = cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause;
+        ProducerRecord<String, String> deadLetter =
+                new ProducerRecord<>(record.topic() + SUFFIX, null, record.key(), record.value());
+        Headers headers = deadLetter.headers();
+        record.headers().forEach(headers::add);
+        headers.add(KafkaHeaders.DLT_ORIGINAL_TOPIC, record.topic().getBytes(StandardCharsets.UTF_8));
+        headers.add(KafkaHeaders.DLT_ORIGINAL_PARTITION, ByteBuffer.allocate(Integer.BYTES)
+                .putInt(record.partition()).array());
+        headers.add(KafkaHeaders.DLT_ORIGINAL_OFFSET, ByteBuffer.allocate(Long.BYTES)
+                .putLong(record.offset()).array());
+        headers.add(KafkaHeaders.DLT_EXCEPTION_FQCN, error.getClass().getName().getBytes(StandardCharsets.UTF_8));
+        if (error.getMessage() != null) {
+            headers.add(KafkaHeaders.DLT_EXCEPTION_MESSAGE, error.getMessage().getBytes(StandardCharsets.UTF_8));
+        }
+        CompletableFuture<Void> sent;
+        try {
+            sent = kafkaTemplate.send(deadLetter).<Void>thenApply(result -> null);
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        return sent.whenComplete((ignored, sendError) -> {
+            if (sendError == null) {
+                deadLettered.increment();
+            } else {
+                logger.error("Failed to dead-letter {}-{}@{}, leaving it uncommitted", record.topic(),
+                        record.partition(), record.offset(), sendError);
+            }
+        });
+    }
+}
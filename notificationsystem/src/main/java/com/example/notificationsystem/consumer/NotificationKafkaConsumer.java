@@ -3,77 +3,246 @@ package com.example.notificationsystem.consumer;
 import com.example.notificationsystem.entity.Notification;
 import com.example.notificationsystem.entity.NotificationDto;
 import com.example.notificationsystem.entity.TempNotification;
-import com.example.notificationsystem.entity.User;
-import com.example.notificationsystem.repository.TempNotificationRepository;
-import com.example.notificationsystem.repository.UserRepository;
+import com.example.notificationsystem.service.NotificationDeduplicator;
+import com.example.notificationsystem.service.NotificationDigester;
+import com.example.notificationsystem.service.NotificationPublisher;
+import com.example.notificationsystem.service.NotificationRateLimiter;
+import com.example.notificationsystem.service.NotificationService;
+import com.example.notificationsystem.service.OfflineInboxStore;
+import com.example.notificationsystem.service.PresenceService;
+import com.example.notificationsystem.service.UsernameCache;
+import com.example.notificationsystem.util.KafkaMessageConverter;
+import com.example.notificationsystem.util.KeyOrderedExecutor;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 @Service
 public class NotificationKafkaConsumer {
 
     private static final Logger logger = LoggerFactory.getLogger(NotificationKafkaConsumer.class);
 
+    public static final String NOTIFICATIONS_TOPIC = "db-notifications.public.notifications";
+
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private PresenceService presenceService;
 
     @Autowired
-    UserRepository userRepository;
+    private UsernameCache usernameCache;
 
     @Autowired
-    private RabbitTemplate rabbitTemplate;
+    private NotificationPublisher notificationPublisher;
 
     @Autowired
-    private TempNotificationRepository tempNotificationRepository;
+    private OfflineInboxStore offlineInboxStore;
 
+    @Autowired
+    private NotificationService notificationService;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private KafkaMessageConverter kafkaMessageConverter;
 
-    @KafkaListener(topics = "db-notifications.public.notifications")
-    public void consume(String message) throws JsonProcessingException {
-        // Assume message contains userId and notification details
-        logger.info("Received message from Kafka: {}", message);
+    @Autowired
+    private KeyOrderedExecutor notificationKeyedExecutor;
 
-        JsonNode root = objectMapper.readTree(message);
+    @Autowired
+    private NotificationDeduplicator notificationDeduplicator;
 
-        JsonNode afterNode = root.path("payload").path("after");
+    @Autowired
+    private NotificationDigester notificationDigester;
 
-        NotificationDto notificationDto = null;
-        if (!afterNode.isMissingNode()) {
-            notificationDto = objectMapper.treeToValue(afterNode, NotificationDto.class);
-            logger.info("Received Notification: {}" , notificationDto.getMessage());
+    @Autowired
+    private NotificationRateLimiter notificationRateLimiter;
+
+    @Autowired
+    private NotificationDeadLetterPublisher deadLetterPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Per-record mode, active unless notification.kafka.listener.mode=batch
+    @KafkaListener(id = "notificationRecordListener", idIsGroup = false, topics = NOTIFICATIONS_TOPIC,
+            containerFactory = "notificationKafkaListenerContainerFactory",
+            autoStartup = "#{'${notification.kafka.listener.mode:record}' == 'record'}")
+    public void consume(ConsumerRecord<String, String> record, Acknowledgment acknowledgment) throws IOException {
+        // Assume message contains userId and notification details
+        logger.info("Received message from Kafka: {}", record.value());
+
+        NotificationDto notificationDto = kafkaMessageConverter.toNotificationDto(record.value());
+        if (notificationDto == null) {
+            // Tombstone or delete event, nothing to deliver
+            acknowledgment.acknowledge();
+            return;
         }
+        logger.info("Received Notification: {}" , notificationDto.getMessage());
         logger.info("User Id: {}", notificationDto.getUserId());
 
+        // The offset is committed only once the notification is published or its inbox entry is stored
+        acknowledgeWhenDone(process(notificationDto), acknowledgment, List.of(record),
+                "notification " + notificationDto.getId());
+    }
+
+    // Keyed mode: records of one partition run in parallel on the worker pool, one at a time per user_id.
+    // Acks arrive out of order and the container commits only the contiguous prefix of finished offsets.
+    // The listener blocks while notification.kafka.keyed.max-in-flight records are unfinished.
+    @KafkaListener(id = "notificationKeyedListener", idIsGroup = false, topics = NOTIFICATIONS_TOPIC,
+            containerFactory = "notificationKafkaListenerContainerFactory",
+            autoStartup = "#{'${notification.kafka.listener.mode:record}' == 'keyed'}")
+    public void consumeKeyed(ConsumerRecord<String, String> record, Acknowledgment acknowledgment) throws IOException {
+        NotificationDto notificationDto = kafkaMessageConverter.toNotificationDto(record.value());
+        if (notificationDto == null) {
+            acknowledgment.acknowledge();
+            return;
+        }
+        // The next record of this user starts only once this one is published or stored
+        acknowledgeWhenDone(notificationKeyedExecutor.submitAsync(notificationDto.getUserId(),
+                () -> process(notificationDto)), acknowledgment, List.of(record),
+                "notification " + notificationDto.getId());
+    }
 
-        User user = userRepository.findById(notificationDto.getUserId()).orElse(null);
+    // Skips notifications that were already handled, e.g. replayed after a rebalance or an offset reset
+    private CompletableFuture<Void> process(NotificationDto notificationDto) {
+        if (!notificationDeduplicator.tryClaim(notificationDto.getId())) {
+            logger.debug("Skipping duplicate notification {}", notificationDto.getId());
+            return CompletableFuture.completedFuture(null);
+        }
+        // In digest mode the notification is routed with the rest of its user's window
+        CompletableFuture<Void> routed;
+        try {
+            routed = notificationDigester.submit(notificationDto, this::route);
+        } catch (RuntimeException e) {
+            notificationDeduplicator.release(notificationDto.getId());
+            throw e;
+        }
+        return routed.whenComplete((ignored, error) -> {
+            if (error == null) {
+                notificationDeduplicator.markProcessed(notificationDto.getId());
+            } else {
+                notificationDeduplicator.release(notificationDto.getId());
+            }
+        });
+    }
+
+    // Publishes to online users and stores everything else in the offline inbox; completes once it is durable
+    private CompletableFuture<Void> route(NotificationDto notificationDto) {
+        String username = usernameCache.getUsername(notificationDto.getUserId());
+        if (username == null) {
+            logger.warn("Dropping notification {} for unknown user: {}", notificationDto.getId(), notificationDto.getUserId());
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Over its recipient or source limit, the notification leaves the live path instead of being dropped
+        if (!notificationRateLimiter.tryAcquire(notificationDto)) {
+            return notificationRateLimiter.getOverflow() == NotificationRateLimiter.Overflow.LANE
+                    ? notificationPublisher.publishLowPriority(List.of(notificationDto),
+                            Map.of(notificationDto.getUserId(), username))
+                    : saveToTempTable(notificationDto, username);
+        }
 
         // Check if user is logged in
-        if (isUserLoggedIn(user.getUsername())) {
-            // Send the message to RabbitMQ
-            sendToRabbitMQ(notificationDto);
-        }else {
-            saveToTempTable(notificationDto, user != null ? user.getUsername() : null);
+        if (isUserLoggedIn(username)) {
+            // Send the message to RabbitMQ, completes once the broker confirms it
+            return sendToRabbitMQ(notificationDto, username);
+        }
+        return saveToTempTable(notificationDto, username);
+    }
+
+    // Batch mode: one poll is resolved and routed with bulk lookups, see NotificationService.dispatchBatch
+    @KafkaListener(id = "notificationBatchListener", idIsGroup = false, topics = NOTIFICATIONS_TOPIC,
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "#{'${notification.kafka.listener.mode:record}' == 'batch'}")
+    public void consumeBatch(List<ConsumerRecord<String, String>> records, Acknowledgment acknowledgment) throws IOException {
+        long start = System.nanoTime();
+
+        List<NotificationDto> notifications = new ArrayList<>(records.size());
+        List<ConsumerRecord<String, String>> claimed = new ArrayList<>(records.size());
+        try {
+            for (ConsumerRecord<String, String> record : records) {
+                NotificationDto notificationDto = kafkaMessageConverter.toNotificationDto(record.value());
+                if (notificationDto == null) {
+                    continue;
+                }
+                if (!notificationDeduplicator.tryClaim(notificationDto.getId())) {
+                    logger.debug("Skipping duplicate notification {} at {}-{}@{}", notificationDto.getId(),
+                            record.topic(), record.partition(), record.offset());
+                    continue;
+                }
+                notifications.add(notificationDto);
+                claimed.add(record);
+            }
+        } catch (IOException | RuntimeException e) {
+            // The container retries the batch, which has to find these ids unclaimed
+            notifications.forEach(notificationDto -> notificationDeduplicator.release(notificationDto.getId()));
+            throw e;
+        }
+        CompletableFuture<Void> dispatched;
+        try {
+            dispatched = notificationService.dispatchBatch(notifications);
+        } catch (RuntimeException e) {
+            dispatched = CompletableFuture.failedFuture(e);
         }
+        dispatched = dispatched.whenComplete((ignored, error) -> {
+            for (NotificationDto notificationDto : notifications) {
+                if (error == null) {
+                    notificationDeduplicator.markProcessed(notificationDto.getId());
+                } else {
+                    notificationDeduplicator.release(notificationDto.getId());
+                }
+            }
+            if (error != null) {
+                return;
+            }
+            // Timed up to the confirms and inbox flushes, not just the dispatch
+            long elapsedNanos = System.nanoTime() - start;
+            logger.info("Processed batch of {} records ({} notifications) in {} ms, {} records/s",
+                    records.size(), notifications.size(), elapsedNanos / 1_000_000,
+                    elapsedNanos > 0 ? records.size() * 1_000_000_000L / elapsedNanos : records.size());
+        });
+        ConsumerRecord<String, String> first = records.get(0);
+        acknowledgeWhenDone(dispatched, acknowledgment, claimed, "batch of " + records.size()
+                + " records from " + first.topic() + "-" + first.partition() + "@" + first.offset());
+    }
+
+    // Acks once the work has finished. The work fails after the listener has returned, too late for the container's
+    // error handler, and an unacked offset would hold back every later commit of the partition. The failed records
+    // therefore go to the DLT and are acked once they are stored there; if that fails as well nothing is acked and
+    // the records are redelivered after the next rebalance or restart. Failed notifications are not marked
+    // processed, so a replay from the DLT still delivers them.
+    private void acknowledgeWhenDone(CompletableFuture<?> done, Acknowledgment acknowledgment,
+                                     List<ConsumerRecord<String, String>> records, String description) {
+        done.whenComplete((ignored, error) -> {
+            if (error == null) {
+                acknowledgment.acknowledge();
+                return;
+            }
+            logger.error("Failed to process {}, dead-lettering {} records", description, records.size(), error);
+            meterRegistry.counter("notifications.consume.failed").increment(records.size());
+            deadLetterPublisher.publishAll(records, error).thenRun(acknowledgment::acknowledge);
+        });
     }
 
     private boolean isUserLoggedIn(String username) {
-        // Check if the user is logged in via Redis
-        return redisTemplate.opsForSet().isMember("loggedInUsers", username);
+        // Check if the user has an open WebSocket session (near-cache, falls back to Redis on a miss)
+        return presenceService.isOnline(username);
     }
 
 
-    public void sendToRabbitMQ(NotificationDto notification) {
-        // Converts and sends the NotificationDto to the "notificationsExchange" with the routing key "notificationRoutingKey"
-        rabbitTemplate.convertAndSend("notificationsExchange", "notificationRoutingKey", notification);
+    public CompletableFuture<Void> sendToRabbitMQ(NotificationDto notification, String username) {
+        // Converts and sends the NotificationDto to the "notificationsExchange", routed per notification.routing.mode
+        return notificationPublisher.publish(notification, username);
     }
 
     private Notification parseMessage(String message) throws JsonProcessingException {
@@ -82,12 +251,12 @@ public class NotificationKafkaConsumer {
         return new ObjectMapper().readValue(message, Notification.class);
     }
 
-    private void saveToTempTable(NotificationDto notification, String username) {
+    private CompletableFuture<Void> saveToTempTable(NotificationDto notification, String username) {
         TempNotification tempNotification = new TempNotification();
         tempNotification.setUserId(notification.getUserId());
         tempNotification.setUsername(username);
         tempNotification.setMessage(notification.getMessage());
-        tempNotificationRepository.save(tempNotification);
-        logger.info("Notification saved to temp table for user: {}", notification.getUserId());
+        logger.info("Notification queued for temp table for user: {}", notification.getUserId());
+        return offlineInboxStore.append(tempNotification);
     }
 }
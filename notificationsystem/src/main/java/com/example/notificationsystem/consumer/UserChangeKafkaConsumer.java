@@ -0,0 +1,50 @@
+package com.example.notificationsystem.consumer;
+
+import com.example.notificationsystem.service.UsernameCache;
+import com.example.notificationsystem.util.KafkaMessageConverter;
+import com.example.notificationsystem.util.KafkaMessageConverter.UserChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+
+/**
+ * Keeps {@link UsernameCache} coherent with the users table by applying its Debezium change events.
+ * Every node must see every event, so each instance has its own consumer group, named after its node id
+ * (see NodeIdentity). The cache starts empty and loads from Postgres on a miss, so the group only needs the events
+ * from its start on: it reads from the latest offset and never commits, and a group without offsets is deleted by
+ * the broker once its last member leaves instead of piling up with every node id that ever ran.
+ */
+@Service
+public class UserChangeKafkaConsumer {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserChangeKafkaConsumer.class);
+
+    @Autowired
+    private UsernameCache usernameCache;
+
+    @Autowired
+    private KafkaMessageConverter kafkaMessageConverter;
+
+    @KafkaListener(topics = "db-notifications.public.users",
+            groupId = "#{'user-cache-' + @nodeIdentity.id}",
+            containerFactory = "perNodeKafkaListenerContainerFactory",
+            properties = {"auto.offset.reset=latest", "enable.auto.commit=false"})
+    public void consume(String message) throws IOException {
+        // Null for the tombstone following a delete, already handled by the delete event
+        UserChange change = kafkaMessageConverter.toUserChange(message);
+        if (change == null) {
+            return;
+        }
+        if (change.username() != null) {
+            usernameCache.put(change.id(), change.username());
+            logger.debug("Refreshed cached username for user: {}", change.id());
+        } else {
+            usernameCache.evict(change.id());
+            logger.debug("Evicted cached username for user: {}", change.id());
+        }
+    }
+}
@@ -1,17 +1,21 @@
 package com.example.notificationsystem.controller;
 
 import com.example.notificationsystem.dto.request.UserRegistrationRequest;
-import com.example.notificationsystem.entity.NotificationDto;
-import com.example.notificationsystem.entity.TempNotification;
+import com.example.notificationsystem.dto.response.NotificationPageResponse;
 import com.example.notificationsystem.entity.User;
+import com.example.notificationsystem.exception.InvalidCursorException;
 import com.example.notificationsystem.model.AuthenticationRequest;
 import com.example.notificationsystem.model.AuthenticationResponse;
-import com.example.notificationsystem.repository.TempNotificationRepository;
 import com.example.notificationsystem.security.JwtUtil;
+import com.example.notificationsystem.security.TokenDenylist;
 import com.example.notificationsystem.service.CustomUserDetailsService;
+import com.example.notificationsystem.service.OfflineInboxStore;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
@@ -20,37 +24,38 @@ import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 @RestController
 @RequestMapping("/api/auth")
 public class JwtAuthenticationController {
 
+    private static final int MAX_PAGE_SIZE = 5000;
+
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtTokenUtil;
     private final CustomUserDetailsService userDetailsService;
-    private final RedisTemplate<String, Object> redisTemplate;
     private final PasswordEncoder passwordEncoder;
-    private final TempNotificationRepository tempNotificationRepository;
+    private final OfflineInboxStore offlineInboxStore;
+    private final TokenDenylist tokenDenylist;
+    private final Timer drainTimer;
 
     @Autowired
     public JwtAuthenticationController(
             AuthenticationManager authenticationManager,
             JwtUtil jwtTokenUtil,
             CustomUserDetailsService userDetailsService,
-            RedisTemplate<String, Object> redisTemplate,
             PasswordEncoder passwordEncoder,
-            TempNotificationRepository tempNotificationRepository) {
+            OfflineInboxStore offlineInboxStore,
+            TokenDenylist tokenDenylist,
+            MeterRegistry meterRegistry) {
         this.authenticationManager = authenticationManager;
         this.jwtTokenUtil = jwtTokenUtil;
         this.userDetailsService = userDetailsService;
-        this.redisTemplate = redisTemplate;
         this.passwordEncoder = passwordEncoder;
-        this.tempNotificationRepository = tempNotificationRepository;
+        this.offlineInboxStore = offlineInboxStore;
+        this.tokenDenylist = tokenDenylist;
+        this.drainTimer = meterRegistry.timer("inbox.drain");
     }
 
     @PostMapping("/register")
@@ -70,22 +75,30 @@ public class JwtAuthenticationController {
         authenticateUser(request.getUsername(), request.getPassword());
         final UserDetails userDetails = userDetailsService.loadUserByUsername(request.getUsername());
         final String jwt = jwtTokenUtil.generateToken(userDetails);
-        redisTemplate.opsForSet().add("loggedInUsers", userDetails.getUsername());
         return ResponseEntity.ok(new AuthenticationResponse(jwt));
     }
 
+    // Drains the offline inbox one page at a time; pass the returned nextCursor as "after" until hasMore is false
     @GetMapping("/notifications/{username}")
-    public ResponseEntity<List<NotificationDto>> getTempNotifications(@PathVariable String username) {
-        List<NotificationDto> notifications = fetchAndDeleteTempNotifications(username);
-        return ResponseEntity.ok(notifications);
+    public ResponseEntity<NotificationPageResponse> getTempNotifications(@PathVariable String username,
+                                                                         @RequestParam(defaultValue = "") String after,
+                                                                         @RequestParam(defaultValue = "500") int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        return ResponseEntity.ok(drainTempNotifications(username, after, pageSize));
     }
 
+    // Revokes the presented token on every node until it expires. Idempotent: an already revoked, expired or
+    // unreadable token cannot authenticate anyway, so logging out with it succeeds too.
     @PostMapping("/logout")
     public ResponseEntity<Void> logout(HttpServletRequest request) {
-        String username = extractUsernameFromRequest(request);
-        if (username != null) {
-            redisTemplate.opsForSet().remove("loggedInUsers", username);
-            request.getSession().invalidate();
+        String jwt = extractTokenFromRequest(request);
+        if (jwt != null) {
+            try {
+                tokenDenylist.revoke(jwtTokenUtil.extractClaim(jwt, Claims::getId),
+                        jwtTokenUtil.extractExpiration(jwt).getTime());
+            } catch (JwtException | IllegalArgumentException e) {
+                // Nothing left to revoke
+            }
             return ResponseEntity.ok().build();
         } else {
             return ResponseEntity.badRequest().build();
@@ -102,29 +115,21 @@ public class JwtAuthenticationController {
         }
     }
 
-    private String extractUsernameFromRequest(HttpServletRequest request) {
+    private String extractTokenFromRequest(HttpServletRequest request) {
         String authorizationHeader = request.getHeader("Authorization");
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            String jwt = authorizationHeader.substring(7);
-            return jwtTokenUtil.extractUsername(jwt);
+            return authorizationHeader.substring(7);
         }
         return null;
     }
-    @Transactional
-    public List<NotificationDto> fetchAndDeleteTempNotifications(String username) {
-        List<TempNotification> tempNotifications = tempNotificationRepository.findByUsername(username);
-        List<NotificationDto> notificationDtos = tempNotifications.stream()
-                .map(this::toNotificationDto)
-                .collect(Collectors.toList());
-        tempNotificationRepository.deleteAll(tempNotifications);
-        return notificationDtos;
+    // One page from the configured OfflineInboxStore, timed as "inbox.drain"
+    public NotificationPageResponse drainTempNotifications(String username, String after, int limit) {
+        return drainTimer.record(() -> offlineInboxStore.drain(username, after, limit));
     }
 
-    private NotificationDto toNotificationDto(TempNotification tempNotification) {
-        NotificationDto notificationDto = new NotificationDto();
-        notificationDto.setUserId(tempNotification.getUserId());
-        notificationDto.setMessage(tempNotification.getMessage());
-        return notificationDto;
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<String> handleInvalidCursorException(InvalidCursorException ex) {
+        return ResponseEntity.badRequest().body(ex.getMessage());
     }
 
     @ExceptionHandler(BadCredentialsException.class)
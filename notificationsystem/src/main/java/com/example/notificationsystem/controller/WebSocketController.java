@@ -1,14 +1,31 @@
 package com.example.notificationsystem.controller;
 
 import com.example.notificationsystem.entity.NotificationDto;
-import com.example.notificationsystem.service.UserService;
+import com.example.notificationsystem.entity.NotificationPriority;
+import com.example.notificationsystem.entity.TempNotification;
+import com.example.notificationsystem.service.InboxReplayService;
+import com.example.notificationsystem.service.NotificationCoalescer;
+import com.example.notificationsystem.service.OfflineInboxStore;
+import com.example.notificationsystem.service.PresenceService;
+import com.example.notificationsystem.service.UsernameCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
 @Controller
 public class WebSocketController {
 
@@ -17,17 +34,132 @@ public class WebSocketController {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
     @Autowired
-    private UserService userService;
+    private UsernameCache usernameCache;
+    @Autowired
+    private InboxReplayService inboxReplayService;
+    @Autowired
+    private NotificationCoalescer notificationCoalescer;
+    @Autowired
+    private PresenceService presenceService;
+    @Autowired
+    private OfflineInboxStore offlineInboxStore;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Longest time a bulk delivery waits for urgent deliveries on this node to finish
+    @Value("${notification.priority.bulk.max-yield-ms:100}")
+    private long bulkMaxYieldMs;
+
+    // Urgent deliveries currently running on this node; bulk deliveries wait while it is above zero.
+    // A lock and condition rather than a monitor, so waiting virtual threads do not pin their carrier.
+    private final AtomicInteger urgentInFlight = new AtomicInteger();
+    private final ReentrantLock urgentLock = new ReentrantLock();
+    private final Condition urgentIdle = urgentLock.newCondition();
+
+    // created_at to hand-off to the relay, per priority; compare URGENT's p99 with and without a bulk blast
+    private final Map<NotificationPriority, Timer> endToEndTimers = new EnumMap<>(NotificationPriority.class);
+
+    // Sends through the broker relay to every session of the user, with the batch headers of coalesced frames
+    private final NotificationCoalescer.FrameSender relaySender = (username, payload, headers) ->
+            messagingTemplate.convertAndSendToUser(username, "/queue/notifications", payload, headers);
+
+    @PostConstruct
+    public void registerTimers() {
+        for (NotificationPriority priority : NotificationPriority.values()) {
+            endToEndTimers.put(priority, Timer.builder("notifications.end_to_end")
+                    .tag("priority", priority.name().toLowerCase())
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry));
+        }
+    }
 
-    @RabbitListener(queues = "notificationQueue")
+    @RabbitListener(queues = "notificationQueue", concurrency = "${notification.priority.normal.concurrency:4}")
     public void handleNotification(NotificationDto notification) {
+        deliver(notification);
+    }
+
+    @RabbitListener(queues = "notificationQueue.urgent", concurrency = "${notification.priority.urgent.concurrency:8}")
+    public void handleUrgentNotification(NotificationDto notification) {
+        urgentInFlight.incrementAndGet();
+        try {
+            deliver(notification);
+        } finally {
+            if (urgentInFlight.decrementAndGet() == 0) {
+                urgentLock.lock();
+                try {
+                    urgentIdle.signalAll();
+                } finally {
+                    urgentLock.unlock();
+                }
+            }
+        }
+    }
+
+    @RabbitListener(queues = "notificationQueue.bulk", concurrency = "${notification.priority.bulk.concurrency:1}")
+    public void handleBulkNotification(NotificationDto notification) {
+        // Best-effort precedence: a bulk delivery waits, at most bulk.max-yield-ms, while an urgent delivery is running
+        // on this node. RabbitMQ has no precedence between queues, so urgent messages still waiting in the broker or
+        // being handled by another node do not hold bulk back; the lanes' separate queues and listener pools (and the
+        // bulk lane's single consumer) are what keep a bulk blast from delaying urgent traffic.
+        if (urgentInFlight.get() == 0) {
+            deliver(notification);
+            return;
+        }
+        long remaining = TimeUnit.MILLISECONDS.toNanos(bulkMaxYieldMs);
+        urgentLock.lock();
+        try {
+            while (urgentInFlight.get() > 0 && remaining > 0) {
+                remaining = urgentIdle.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            // The container is stopping; deliver rather than requeue
+            Thread.currentThread().interrupt();
+        } finally {
+            urgentLock.unlock();
+        }
+        deliver(notification);
+    }
+
+    private void deliver(NotificationDto notification) {
         logger.info("Received notification from RabbitMQ: {}", notification.getMessage());
         logger.info("Received notification from RabbitMQ2: {}", notification.getUserId());
 
-        String userId = String.valueOf(notification.getUserId());
-        String userName = userService.getUserById(Long.parseLong(userId)).getUsername();
+        String userName = usernameCache.getUsername(notification.getUserId());
         logger.info("Sending notification to user: {}", userName);
-        messagingTemplate.convertAndSendToUser(userName, "/queue/notifications", notification);
+        // Keeps live notifications behind a running inbox replay so the client receives them in order
+        if (inboxReplayService.deferIfReplaying(userName,
+                () -> messagingTemplate.convertAndSendToUser(userName, "/queue/notifications", notification))) {
+            logger.info("Notification for user {} queued behind inbox replay", userName);
+            return;
+        }
+        notificationCoalescer.submit(userName, notification, relaySender);
+        if (notification.getCreatedAt() > 0) {
+            endToEndTimers.get(notification.getPriority())
+                    .record(System.currentTimeMillis() - notification.getCreatedAt(), TimeUnit.MILLISECONDS);
+        }
         logger.info("Notification sent to user: {}", userName);
     }
+
+    // Rate-limited notifications, drained by one consumer per node. They may wait here for a while,
+    // so users who went offline in the meantime get them in their inbox instead.
+    @RabbitListener(queues = "notificationQueue.low", concurrency = "1")
+    public void handleLowPriorityNotification(NotificationDto notification) {
+        String userName = usernameCache.getUsername(notification.getUserId());
+        if (userName != null && !presenceService.isOnline(userName)) {
+            TempNotification tempNotification = new TempNotification();
+            tempNotification.setUserId(notification.getUserId());
+            tempNotification.setUsername(userName);
+            tempNotification.setMessage(notification.getMessage());
+            offlineInboxStore.append(tempNotification).join();
+            return;
+        }
+        deliver(notification);
+    }
+
+    // This node's own queue, only used with notification.routing.mode=node
+    @RabbitListener(queues = "#{@nodeIdentity.queueName}",
+            autoStartup = "#{'${notification.routing.mode:shared}' == 'node'}")
+    public void handleNodeNotification(NotificationDto notification) {
+        deliver(notification);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,44 @@
+package com.example.notificationsystem.dto.response;
+
+import com.example.notificationsystem.entity.NotificationDto;
+
+import java.util.List;
+
+public class NotificationPageResponse {
+    private List<NotificationDto> notifications;
+    private String nextCursor;
+    private boolean hasMore;
+
+    public NotificationPageResponse() {
+    }
+
+    public NotificationPageResponse(List<NotificationDto> notifications, String nextCursor, boolean hasMore) {
+        this.notifications = notifications;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<NotificationDto> getNotifications() {
+        return notifications;
+    }
+
+    public void setNotifications(List<NotificationDto> notifications) {
+        this.notifications = notifications;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
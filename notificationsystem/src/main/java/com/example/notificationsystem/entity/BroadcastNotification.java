@@ -0,0 +1,75 @@
+package com.example.notificationsystem.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// One row per group, role or all-users notification; fanned out to the recipients by FanOutService
+@Entity
+@Table(name = "broadcast_notifications")
+public class BroadcastNotification {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String message;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "target_type", nullable = false)
+    private NotificationTarget targetType;
+
+    // Group or role name, null for ALL
+    @Column(name = "target")
+    private String target;
+
+    // Constructors
+
+    public BroadcastNotification() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public NotificationTarget getTargetType() {
+        return targetType;
+    }
+
+    public void setTargetType(NotificationTarget targetType) {
+        this.targetType = targetType;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.notificationsystem.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BroadcastNotificationDto {
+
+    @JsonProperty("id")
+    private long id;
+
+    @JsonProperty("created_at")
+    private long createdAt;
+
+    @JsonProperty("message")
+    private String message;
+
+    @JsonProperty("target_type")
+    private NotificationTarget targetType;
+
+    @JsonProperty("target")
+    private String target;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public NotificationTarget getTargetType() {
+        return targetType;
+    }
+
+    public void setTargetType(NotificationTarget targetType) {
+        this.targetType = targetType;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+
+    @Override
+    public String toString() {
+        return "BroadcastNotificationDto{" +
+                "id=" + id +
+                ", createdAt=" + createdAt +
+                ", message='" + message + '\'' +
+                ", targetType=" + targetType +
+                ", target='" + target + '\'' +
+                '}';
+    }
+}
@@ -16,6 +16,15 @@ public class Notification {
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
+    // Null is treated as NORMAL
+    @Enumerated(EnumType.STRING)
+    @Column(name = "priority")
+    private NotificationPriority priority;
+
+    // Producer of the notification (job or service name), used for per-source rate limiting; null if unknown
+    @Column(name = "source")
+    private String source;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
@@ -58,6 +67,22 @@ public class Notification {
         this.createdAt = createdAt;
     }
 
+    public NotificationPriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(NotificationPriority priority) {
+        this.priority = priority;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
     public User getUser() {
         return user;
     }
@@ -1,8 +1,11 @@
 package com.example.notificationsystem.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.List;
+
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class NotificationDto {
 
@@ -18,6 +21,23 @@ public class NotificationDto {
     @JsonProperty("user_id")
     private long user_Id;
 
+    @JsonProperty("priority")
+    private NotificationPriority priority = NotificationPriority.NORMAL;
+
+    @JsonProperty("source")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String source;
+
+    // Set on digests only: number of notifications folded into this one, see NotificationDigester
+    @JsonProperty("digest_count")
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private int digestCount;
+
+    // Set on digests only: the newest folded notifications, oldest first
+    @JsonProperty("items")
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<NotificationDto> items;
+
     public long getId() {
         return id;
     }
@@ -50,6 +70,38 @@ public class NotificationDto {
         this.user_Id = user_Id;
     }
 
+    public NotificationPriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(NotificationPriority priority) {
+        this.priority = priority == null ? NotificationPriority.NORMAL : priority;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public int getDigestCount() {
+        return digestCount;
+    }
+
+    public void setDigestCount(int digestCount) {
+        this.digestCount = digestCount;
+    }
+
+    public List<NotificationDto> getItems() {
+        return items;
+    }
+
+    public void setItems(List<NotificationDto> items) {
+        this.items = items;
+    }
+
     @Override
     public String toString() {
         return "NotificationDto{" +
@@ -57,6 +109,8 @@ public class NotificationDto {
                 ", createdAt=" + createdAt +
                 ", message='" + message + '\'' +
                 ", userId=" + user_Id +
+                ", priority=" + priority +
+                (digestCount > 0 ? ", digestCount=" + digestCount : "") +
                 '}';
     }
 }
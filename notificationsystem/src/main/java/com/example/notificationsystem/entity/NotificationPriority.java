@@ -0,0 +1,23 @@
+package com.example.notificationsystem.entity;
+
+// Delivery lane of a notification; each has its own RabbitMQ queue and listener pool, see RabbitMQConfig
+public enum NotificationPriority {
+    // Security alerts and the like: own consumer pool, bulk traffic yields to it
+    URGENT,
+    // Default for rows without a priority
+    NORMAL,
+    // Marketing blasts and other mass sends
+    BULK;
+
+    // Unknown or missing values fall back to NORMAL
+    public static NotificationPriority parse(String value) {
+        if (value == null) {
+            return NORMAL;
+        }
+        try {
+            return valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return NORMAL;
+        }
+    }
+}
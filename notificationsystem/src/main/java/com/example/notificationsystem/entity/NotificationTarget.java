@@ -0,0 +1,23 @@
+package com.example.notificationsystem.entity;
+
+// Recipients of a broadcast notification
+public enum NotificationTarget {
+    // Members of the user group named by the notification's target
+    GROUP,
+    // Users holding the role named by the notification's target
+    ROLE,
+    // Every user, the target is ignored
+    ALL;
+
+    // Unknown values, e.g. a type added on the producer side first, map to null so the broadcast is dropped
+    public static NotificationTarget parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
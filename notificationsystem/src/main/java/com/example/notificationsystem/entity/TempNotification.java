@@ -3,6 +3,7 @@ package com.example.notificationsystem.entity;
 import jakarta.persistence.*;
 
 @Entity
+@Table(indexes = @Index(name = "idx_temp_notification_username_id", columnList = "username, id"))
 public class TempNotification {
 
     @Id
@@ -10,6 +11,8 @@ public class TempNotification {
     private Long id;
     private Long userId;
     private String username;
+    // TEXT like notifications.message, a longer message would be rejected by the inbox writer
+    @Column(columnDefinition = "TEXT")
     private String message;
     @Version
     private Long version; // Optimistic locking version field
@@ -0,0 +1,9 @@
+package com.example.notificationsystem.exception;
+
+// A paging cursor that the offline inbox store did not issue; answered with 400 Bad Request
+public class InvalidCursorException extends IllegalArgumentException {
+
+    public InvalidCursorException(String cursor) {
+        super("Invalid cursor: " + cursor);
+    }
+}
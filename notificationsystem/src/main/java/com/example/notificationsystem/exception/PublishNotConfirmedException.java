@@ -0,0 +1,9 @@
+package com.example.notificationsystem.exception;
+
+// The broker did not accept a message within the configured retries, or the confirm window stayed full
+public class PublishNotConfirmedException extends RuntimeException {
+
+    public PublishNotConfirmedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.notificationsystem.repository;
+
+import com.example.notificationsystem.entity.TempNotification;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public interface TempNotificationBatchRepository {
+    // Inserts all notifications with a single JDBC batch, all or nothing
+    @Transactional
+    void insertAll(List<TempNotification> tempNotifications);
+
+    // Deletes and returns up to limit of the user's oldest rows with id > afterId, ordered by id, in one statement
+    List<TempNotification> drainPage(String username, long afterId, int limit);
+
+    // Returns up to limit of the user's oldest rows with id > afterId, ordered by id, without deleting them
+    List<TempNotification> readPage(String username, long afterId, int limit);
+
+    // Deletes the user's rows with id <= upToId
+    void deleteUpTo(String username, long upToId);
+}
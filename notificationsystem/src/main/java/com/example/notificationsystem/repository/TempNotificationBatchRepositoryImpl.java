@@ -0,0 +1,73 @@
+package com.example.notificationsystem.repository;
+
+import com.example.notificationsystem.entity.TempNotification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.Comparator;
+import java.util.List;
+
+// TempNotification uses IDENTITY ids, so Hibernate cannot batch its inserts; write them with plain JDBC instead.
+public class TempNotificationBatchRepositoryImpl implements TempNotificationBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO temp_notification (user_id, username, message, version) VALUES (?, ?, ?, 0)";
+
+    // Walks the (username, id) index; SKIP LOCKED keeps two concurrent drains from returning the same rows
+    private static final String DRAIN_PAGE_SQL =
+            "DELETE FROM temp_notification WHERE id IN ("
+                    + "SELECT id FROM temp_notification WHERE username = ? AND id > ? ORDER BY id LIMIT ? "
+                    + "FOR UPDATE SKIP LOCKED) "
+                    + "RETURNING id, user_id, username, message";
+
+    private static final String READ_PAGE_SQL =
+            "SELECT id, user_id, username, message FROM temp_notification "
+                    + "WHERE username = ? AND id > ? ORDER BY id LIMIT ?";
+
+    private static final String DELETE_UP_TO_SQL = "DELETE FROM temp_notification WHERE username = ? AND id <= ?";
+
+    private static final RowMapper<TempNotification> ROW_MAPPER = (rs, rowNum) -> {
+        TempNotification tempNotification = new TempNotification();
+        tempNotification.setId(rs.getLong("id"));
+        tempNotification.setUserId(rs.getLong("user_id"));
+        tempNotification.setUsername(rs.getString("username"));
+        tempNotification.setMessage(rs.getString("message"));
+        return tempNotification;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TempNotificationBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void insertAll(List<TempNotification> tempNotifications) {
+        if (tempNotifications.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, tempNotifications, tempNotifications.size(), (ps, tempNotification) -> {
+            ps.setLong(1, tempNotification.getUserId());
+            ps.setString(2, tempNotification.getUsername());
+            ps.setString(3, tempNotification.getMessage());
+        });
+    }
+
+    @Override
+    public List<TempNotification> drainPage(String username, long afterId, int limit) {
+        List<TempNotification> page = jdbcTemplate.query(DRAIN_PAGE_SQL, ROW_MAPPER, username, afterId, limit);
+        // RETURNING does not preserve the subquery order
+        page.sort(Comparator.comparing(TempNotification::getId));
+        return page;
+    }
+
+    @Override
+    public List<TempNotification> readPage(String username, long afterId, int limit) {
+        return jdbcTemplate.query(READ_PAGE_SQL, ROW_MAPPER, username, afterId, limit);
+    }
+
+    @Override
+    public void deleteUpTo(String username, long upToId) {
+        jdbcTemplate.update(DELETE_UP_TO_SQL, username, upToId);
+    }
+}
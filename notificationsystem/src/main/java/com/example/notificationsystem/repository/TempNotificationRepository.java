@@ -7,6 +7,6 @@ import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
-public interface TempNotificationRepository extends JpaRepository<TempNotification, Long> {
+public interface TempNotificationRepository extends JpaRepository<TempNotification, Long>, TempNotificationBatchRepository {
     List<TempNotification> findByUsername(String username);
-}
\ No newline at end of file
+}
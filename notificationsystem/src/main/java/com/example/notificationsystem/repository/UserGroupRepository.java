@@ -0,0 +1,14 @@
+package com.example.notificationsystem.repository;
+
+import com.example.notificationsystem.entity.UserGroup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserGroupRepository extends JpaRepository<UserGroup, Long> {
+
+    @Query("select count(u) > 0 from UserGroup g join g.members u where g.name = :group and u.username = :username")
+    boolean isMember(@Param("group") String group, @Param("username") String username);
+}
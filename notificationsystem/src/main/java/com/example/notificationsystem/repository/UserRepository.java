@@ -1,13 +1,56 @@
 package com.example.notificationsystem.repository;
 
 import com.example.notificationsystem.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
-}
 
+    @Query("select u.username from User u where u.id = :id")
+    Optional<String> findUsernameById(@Param("id") Long id);
+
+    // Resolves only id and username for a set of users in one query, without loading the roles join
+    @Query("select u.id as id, u.username as username from User u where u.id in :ids")
+    List<UsernameView> findUsernamesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Keyset-paged recipient lists for broadcast fan-out, ordered by id; pass the last id of a page as afterId
+    @Query("select u.id as id, u.username as username from User u where u.id > :afterId order by u.id")
+    List<UsernameView> findUsernamesAfter(@Param("afterId") long afterId, Pageable page);
+
+    @Query("select u.id as id, u.username as username from User u join u.roles r "
+            + "where r.name = :role and u.id > :afterId order by u.id")
+    List<UsernameView> findUsernamesByRoleAfter(@Param("role") String role, @Param("afterId") long afterId, Pageable page);
+
+    @Query("select u.id as id, u.username as username from UserGroup g join g.members u "
+            + "where g.name = :group and u.id > :afterId order by u.id")
+    List<UsernameView> findUsernamesByGroupAfter(@Param("group") String group, @Param("afterId") long afterId, Pageable page);
+
+    // The recipients of a broadcast among the given users, for the per-node pass of the fan-out
+    @Query("select u.id as id, u.username as username from User u where u.username in :usernames")
+    List<UsernameView> findUsernamesByUsernameIn(@Param("usernames") Collection<String> usernames);
+
+    @Query("select u.id as id, u.username as username from User u join u.roles r "
+            + "where r.name = :role and u.username in :usernames")
+    List<UsernameView> findUsernamesByRoleAndUsernameIn(@Param("role") String role,
+                                                        @Param("usernames") Collection<String> usernames);
+
+    @Query("select u.id as id, u.username as username from UserGroup g join g.members u "
+            + "where g.name = :group and u.username in :usernames")
+    List<UsernameView> findUsernamesByGroupAndUsernameIn(@Param("group") String group,
+                                                         @Param("usernames") Collection<String> usernames);
+
+    interface UsernameView {
+        Long getId();
+
+        String getUsername();
+    }
+}
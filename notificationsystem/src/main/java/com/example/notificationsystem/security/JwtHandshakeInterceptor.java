@@ -8,11 +8,14 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.server.HandshakeInterceptor;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Map;
 
 public class JwtHandshakeInterceptor implements HandshakeInterceptor {
@@ -20,9 +23,14 @@ public class JwtHandshakeInterceptor implements HandshakeInterceptor {
     private static final Logger logger = LoggerFactory.getLogger(JwtHandshakeInterceptor.class);
 
     private final JwtUtil jwtUtil;
+    private final TokenDenylist tokenDenylist;
+    private final UserDetailsService userDetailsService;
 
-    public JwtHandshakeInterceptor(JwtUtil jwtUtil) {
+    public JwtHandshakeInterceptor(JwtUtil jwtUtil, TokenDenylist tokenDenylist,
+                                   UserDetailsService userDetailsService) {
         this.jwtUtil = jwtUtil;
+        this.tokenDenylist = tokenDenylist;
+        this.userDetailsService = userDetailsService;
     }
 
     @Override
@@ -43,15 +51,19 @@ public class JwtHandshakeInterceptor implements HandshakeInterceptor {
         if (token != null) {
             try {
                 Claims claims = jwtUtil.extractAllClaims(token);
-                if (!jwtUtil.isTokenExpired(token)) {
+                if (!jwtUtil.isTokenExpired(token) && !tokenDenylist.isRevoked(claims.getId())) {
                     logger.info("username: {}", claims.getSubject());
                     attributes.put("username", claims.getSubject());
+                    // Role topic subscriptions check these, so older tokens without the claim load them
+                    Collection<? extends GrantedAuthority> authorities = jwtUtil.hasAuthorities(claims)
+                            ? jwtUtil.extractAuthorities(claims)
+                            : userDetailsService.loadUserByUsername(claims.getSubject()).getAuthorities();
                     SecurityContextHolder.getContext().setAuthentication(
-                            new UsernamePasswordAuthenticationToken(claims.getSubject(), null, new ArrayList<>())
+                            new UsernamePasswordAuthenticationToken(claims.getSubject(), null, authorities)
                     );
                     return true;
                 }
-            } catch (JwtException e) {
+            } catch (JwtException | UsernameNotFoundException e) {
                 response.setStatusCode(HttpStatus.FORBIDDEN);
                 return false;
             }
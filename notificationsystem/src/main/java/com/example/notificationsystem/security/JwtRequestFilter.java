@@ -1,56 +1,91 @@
-// JwtRequestFilter.java
 package com.example.notificationsystem.security;
 
 import com.example.notificationsystem.service.CustomUserDetailsService;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
 
+/**
+ * Authenticates bearer tokens. With notification.security.auth-mode=database (the default) the user is reloaded
+ * through {@link CustomUserDetailsService} on every request, so disabled users and changed roles take effect at once.
+ * "stateless" takes the user and their authorities from the token's claims alone; role changes then only apply to
+ * tokens issued afterwards, and tokens without a roles claim still go through the database. Both modes reject
+ * tokens in the {@link TokenDenylist}.
+ */
 @Component
 public class JwtRequestFilter extends OncePerRequestFilter {
 
+    private static final Logger logger = LoggerFactory.getLogger(JwtRequestFilter.class);
+
     @Autowired
     private CustomUserDetailsService userDetailsService;
 
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private TokenDenylist tokenDenylist;
+
+    @Value("${notification.security.auth-mode:database}")
+    private String authMode;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
         final String authorizationHeader = request.getHeader("Authorization");
 
-        String username = null;
+        Claims claims = null;
         String jwt = null;
 
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
             jwt = authorizationHeader.substring(7);
             try {
-                username = jwtUtil.extractUsername(jwt);
+                claims = jwtUtil.extractAllClaims(jwt);
             } catch (IllegalArgumentException e) {
-                System.out.println("Unable to get JWT Token");
+                logger.debug("Unable to get JWT Token");
             } catch (ExpiredJwtException e) {
-                System.out.println("JWT Token has expired");
+                logger.debug("JWT Token has expired");
             } catch (Exception e) {
-                System.out.println("JWT Token is invalid");
+                logger.debug("JWT Token is invalid: {}", e.toString());
             }
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+        if (claims != null && tokenDenylist.isRevoked(claims.getId())) {
+            logger.debug("JWT Token {} has been revoked", claims.getId());
+            claims = null;
+        }
+
+        if (claims != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            UserDetails userDetails;
+            if (!"stateless".equals(authMode) || !jwtUtil.hasAuthorities(claims)) {
+                userDetails = this.userDetailsService.loadUserByUsername(claims.getSubject());
+                if (!jwtUtil.validateToken(jwt, userDetails)) {
+                    userDetails = null;
+                }
+            } else {
+                List<GrantedAuthority> authorities = jwtUtil.extractAuthorities(claims);
+                userDetails = new User(claims.getSubject(), "", authorities);
+            }
 
-            if (jwtUtil.validateToken(jwt, userDetails)) {
+            if (userDetails != null) {
                 UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken =
                         new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 usernamePasswordAuthenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
@@ -59,4 +94,4 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         }
         chain.doFilter(request, response);
     }
-}
\ No newline at end of file
+}
@@ -1,27 +1,89 @@
 package com.example.notificationsystem.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Service
 public class JwtUtil {
 
+    // Claim holding the user's authorities, so requests can be authenticated without loading the user
+    public static final String ROLES_CLAIM = "roles";
+
     // Generate a secure key for HS256
     private final SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
 
+    // Parsers are immutable and thread-safe, build it once instead of per call
+    private final JwtParser parser = Jwts.parserBuilder()
+            .setSigningKey(key)  // Use the secure key for parsing
+            .build();
+
+    // Verified claims keyed by SHA-256 of the token, each entry expires together with its token. Entries are
+    // read-only snapshots and every caller gets its own Claims copy, so one request cannot alter another's claims.
+    private final Cache<String, VerifiedClaims> verifiedClaims;
+
+    public JwtUtil(MeterRegistry meterRegistry,
+                   @Value("${notification.jwt.claims-cache.maximum-size:100000}") long maximumSize) {
+        this.verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, VerifiedClaims>() {
+                    @Override
+                    public long expireAfterCreate(String digest, VerifiedClaims claims, long currentTime) {
+                        long remainingMillis = claims.expiresAtMillis() - System.currentTimeMillis();
+                        return Math.max(0, remainingMillis) * 1_000_000;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String digest, VerifiedClaims claims, long currentTime,
+                                                  long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String digest, VerifiedClaims claims, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedClaims, "jwtClaims");
+    }
+
     // Generate token for user
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
+        claims.put(ROLES_CLAIM, userDetails.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList());
         return createToken(claims, userDetails.getUsername());
     }
 
@@ -30,6 +92,7 @@ public class JwtUtil {
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
+                .setId(UUID.randomUUID().toString())  // Lets a single token be revoked
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10))  // 10 hours validity
                 .signWith(key)  // Use the secure key generated
@@ -38,8 +101,8 @@ public class JwtUtil {
 
     // Validate token
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        final Claims claims = extractAllClaims(token);
+        return (claims.getSubject().equals(userDetails.getUsername()) && !claims.getExpiration().before(new Date()));
     }
 
     // Extract username from token
@@ -58,17 +121,69 @@ public class JwtUtil {
         return claimsResolver.apply(claims);
     }
 
+    // Tokens issued before the roles claim existed lack it; their authorities have to be loaded from the database
+    public boolean hasAuthorities(Claims claims) {
+        return claims.get(ROLES_CLAIM) instanceof Collection<?>;
+    }
+
+    // Extract the authorities signed into the token; tokens without the claim carry none, see hasAuthorities
+    public List<GrantedAuthority> extractAuthorities(Claims claims) {
+        Object roles = claims.get(ROLES_CLAIM);
+        if (!(roles instanceof Collection<?> names)) {
+            return List.of();
+        }
+        return names.stream()
+                .map(name -> (GrantedAuthority) new SimpleGrantedAuthority(String.valueOf(name)))
+                .toList();
+    }
+
     // Check if the token has expired
     Boolean isTokenExpired(String token) {
         return extractExpiration(token).before(new Date());
     }
 
-    // Extract all claims from token
-     Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)  // Use the secure key for parsing
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    // Extract all claims from token, the signature is only verified the first time a token is seen
+    Claims extractAllClaims(String token) {
+        String digest = digest(token);
+        VerifiedClaims cached = verifiedClaims.getIfPresent(digest);
+        if (cached != null && cached.expiresAtMillis() > System.currentTimeMillis()) {
+            return Jwts.claims(cached.claims());
+        }
+        // Invalid or expired tokens throw here and are never cached
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        if (claims.getExpiration() != null) {
+            verifiedClaims.put(digest, VerifiedClaims.of(claims));
+        }
+        return claims;
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Unmodifiable copy of a token's claims; list and map values, such as the roles, are copied as well
+    private record VerifiedClaims(Map<String, Object> claims, long expiresAtMillis) {
+
+        static VerifiedClaims of(Claims claims) {
+            Map<String, Object> copy = new LinkedHashMap<>();
+            claims.forEach((name, value) -> copy.put(name, freeze(value)));
+            return new VerifiedClaims(Collections.unmodifiableMap(copy), claims.getExpiration().getTime());
+        }
+
+        private static Object freeze(Object value) {
+            if (value instanceof List<?> list) {
+                return Collections.unmodifiableList(new ArrayList<>(list));
+            }
+            if (value instanceof Map<?, ?> map) {
+                return Collections.unmodifiableMap(new LinkedHashMap<>(map));
+            }
+            return value;
+        }
     }
 }
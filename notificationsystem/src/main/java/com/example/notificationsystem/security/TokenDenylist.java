@@ -0,0 +1,107 @@
+package com.example.notificationsystem.security;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Revoked token ids (the "jti" claim), checked in memory on every request.
+ * <p>
+ * A revocation is stored as {@code jwt:revoked:{jti}} with a TTL that ends at the token's own expiry and is
+ * broadcast on {@link #REVOCATION_CHANNEL}, so every node adds it to its local set right away. Nodes load the
+ * stored revocations on startup. Entries are dropped once the token would have expired anyway, which keeps the
+ * set as small as the number of revoked but still valid tokens.
+ */
+@Service
+public class TokenDenylist implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenDenylist.class);
+
+    public static final String REVOCATION_CHANNEL = "token-revocations";
+
+    private static final String KEY_PREFIX = "jwt:revoked:";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    // Token id -> expiry of the token in epoch millis
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    public TokenDenylist(RedisTemplate<String, Object> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @PostConstruct
+    public void loadRevocations() {
+        List<String> keys = redisTemplate.execute((RedisCallback<List<String>>) connection -> {
+            List<String> found = new ArrayList<>();
+            ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(1000).build();
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                cursor.forEachRemaining(key -> found.add(new String(key, StandardCharsets.UTF_8)));
+            }
+            return found;
+        });
+        if (keys == null || keys.isEmpty()) {
+            return;
+        }
+        List<Object> expiries = redisTemplate.opsForValue().multiGet(keys);
+        for (int i = 0; i < keys.size(); i++) {
+            Object expiry = expiries == null ? null : expiries.get(i);
+            if (expiry != null) {
+                revoked.put(keys.get(i).substring(KEY_PREFIX.length()), Long.parseLong(expiry.toString()));
+            }
+        }
+        logger.info("Loaded {} revoked tokens", revoked.size());
+    }
+
+    public void revoke(String tokenId, long expiresAtMillis) {
+        long remainingMillis = expiresAtMillis - System.currentTimeMillis();
+        if (tokenId == null || remainingMillis <= 0) {
+            return;
+        }
+        revoked.put(tokenId, expiresAtMillis);
+        redisTemplate.opsForValue().set(KEY_PREFIX + tokenId, String.valueOf(expiresAtMillis),
+                Duration.ofMillis(remainingMillis));
+        redisTemplate.convertAndSend(REVOCATION_CHANNEL, tokenId + ":" + expiresAtMillis);
+    }
+
+    public boolean isRevoked(String tokenId) {
+        return tokenId != null && revoked.containsKey(tokenId);
+    }
+
+    // Revocations published by any node (including this one), formatted as "jti:expiresAtMillis"
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String event = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = event.lastIndexOf(':');
+        if (separator <= 0) {
+            logger.warn("Ignoring malformed revocation event: {}", event);
+            return;
+        }
+        try {
+            revoked.put(event.substring(0, separator), Long.parseLong(event.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed revocation event: {}", event);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${notification.security.denylist-purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+    }
+}
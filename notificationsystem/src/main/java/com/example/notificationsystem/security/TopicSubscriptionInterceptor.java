@@ -0,0 +1,87 @@
+package com.example.notificationsystem.security;
+
+import com.example.notificationsystem.repository.UserGroupRepository;
+import com.example.notificationsystem.service.FanOutService;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+
+/**
+ * Guards SUBSCRIBE frames for the broadcast topics of {@link FanOutService}: the all-users topic needs an
+ * authenticated session, a role topic the matching authority and a group topic membership of that group.
+ * Wildcards are rejected, since the relay would pass them on to RabbitMQ as topic patterns.
+ */
+@Component
+public class TopicSubscriptionInterceptor implements ChannelInterceptor {
+
+    private static final String ROLE_TOPIC_PREFIX = FanOutService.TOPIC_PREFIX + "role.";
+    private static final String GROUP_TOPIC_PREFIX = FanOutService.TOPIC_PREFIX + "group.";
+
+    private final UserGroupRepository userGroupRepository;
+
+    public TopicSubscriptionInterceptor(UserGroupRepository userGroupRepository) {
+        this.userGroupRepository = userGroupRepository;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.SUBSCRIBE) {
+            return message;
+        }
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(FanOutService.TOPIC_PREFIX)) {
+            return message;
+        }
+        if (destination.contains("*") || destination.contains("#")) {
+            throw new AccessDeniedException("Wildcard subscriptions are not allowed: " + destination);
+        }
+        String username = resolveUsername(accessor);
+        if (username == null) {
+            throw new AccessDeniedException("Subscription to " + destination + " requires authentication");
+        }
+        if (destination.startsWith(ROLE_TOPIC_PREFIX)
+                && !hasAuthority(accessor.getUser(), destination.substring(ROLE_TOPIC_PREFIX.length()))) {
+            throw new AccessDeniedException("Missing role for " + destination);
+        }
+        if (destination.startsWith(GROUP_TOPIC_PREFIX)
+                && !userGroupRepository.isMember(destination.substring(GROUP_TOPIC_PREFIX.length()), username)) {
+            throw new AccessDeniedException("Not a member of the group of " + destination);
+        }
+        return message;
+    }
+
+    private static boolean hasAuthority(Principal principal, String role) {
+        if (!(principal instanceof Authentication authentication)) {
+            return false;
+        }
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            if (role.equals(authority.getAuthority())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Same resolution as WebSocketEventListener: the principal, else the username stored at the handshake
+    private static String resolveUsername(StompHeaderAccessor accessor) {
+        Principal user = accessor.getUser();
+        if (user != null && user.getName() != null) {
+            return user.getName();
+        }
+        if (accessor.getSessionAttributes() != null
+                && accessor.getSessionAttributes().get("username") instanceof String username) {
+            return username;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.entity.BroadcastNotificationDto;
+import com.example.notificationsystem.entity.NotificationTarget;
+import com.example.notificationsystem.entity.TempNotification;
+import com.example.notificationsystem.repository.UserRepository;
+import com.example.notificationsystem.repository.UserRepository.UsernameView;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fans a group, role or all-users notification out to its recipients.
+ * <p>
+ * Online recipients get it through one message on a shared topic ({@link #topicFor}), which the broker copies to
+ * every subscribed session, so no per-user lookup or publish is made for them. The recipient list is only read to
+ * find the offline users: it is walked in keyset pages of notification.fanout.page-size, each page checked with one
+ * pipelined presence lookup and its offline users appended to their inboxes in one bulk write. A page whose write
+ * fails is retried up to notification.fanout.max-retries times with exponential backoff.
+ * <p>
+ * Presence only says a user is connected, not that they subscribed to the topic. Every node therefore also runs
+ * {@link #storeForUnsubscribed} for the broadcast, which checks its own {@link LocalNotificationDelivery} sessions
+ * and stores the broadcast in the inbox of recipients connected there without a subscription to the topic.
+ */
+@Service
+public class FanOutService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FanOutService.class);
+
+    public static final String TOPIC_PREFIX = "/topic/notifications.";
+
+    private final UserRepository userRepository;
+    private final PresenceService presenceService;
+    private final OfflineInboxStore offlineInboxStore;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final LocalNotificationDelivery localDelivery;
+    private final int pageSize;
+    private final int maxRetries;
+    private final long retryBackoffMs;
+    private final Timer fanOutTimer;
+
+    public FanOutService(UserRepository userRepository,
+                         PresenceService presenceService,
+                         OfflineInboxStore offlineInboxStore,
+                         SimpMessagingTemplate messagingTemplate,
+                         LocalNotificationDelivery localDelivery,
+                         MeterRegistry meterRegistry,
+                         @Value("${notification.fanout.page-size:5000}") int pageSize,
+                         @Value("${notification.fanout.max-retries:5}") int maxRetries,
+                         @Value("${notification.fanout.retry-backoff-ms:500}") long retryBackoffMs) {
+        this.userRepository = userRepository;
+        this.presenceService = presenceService;
+        this.offlineInboxStore = offlineInboxStore;
+        this.messagingTemplate = messagingTemplate;
+        this.localDelivery = localDelivery;
+        this.pageSize = pageSize;
+        this.maxRetries = maxRetries;
+        this.retryBackoffMs = retryBackoffMs;
+        this.fanOutTimer = meterRegistry.timer("notifications.fanout");
+    }
+
+    // "/topic/notifications.all", "/topic/notifications.role.{role}" or "/topic/notifications.group.{group}"
+    public static String topicFor(NotificationTarget targetType, String target) {
+        if (targetType == NotificationTarget.ALL) {
+            return TOPIC_PREFIX + "all";
+        }
+        return TOPIC_PREFIX + targetType.name().toLowerCase() + "." + target;
+    }
+
+    // Completes once the inbox entries of all offline recipients are stored; fails if a page could not be stored
+    // within its retries
+    public CompletableFuture<Void> fanOut(BroadcastNotificationDto broadcast) {
+        if (!hasValidTarget(broadcast)) {
+            logger.warn("Dropping broadcast {} without a valid target", broadcast.getId());
+            return CompletableFuture.completedFuture(null);
+        }
+        return fanOutTimer.record(() -> {
+            messagingTemplate.convertAndSend(topicFor(broadcast.getTargetType(), broadcast.getTarget()), broadcast);
+
+            List<CompletableFuture<Void>> stored = new ArrayList<>();
+            Pageable page = PageRequest.of(0, pageSize);
+            long afterId = 0;
+            int recipients = 0;
+            int offline = 0;
+            List<UsernameView> users;
+            do {
+                users = recipients(broadcast, afterId, page);
+                if (users.isEmpty()) {
+                    break;
+                }
+                List<String> usernames = new ArrayList<>(users.size());
+                for (UsernameView user : users) {
+                    usernames.add(user.getUsername());
+                }
+                Map<String, Boolean> online = presenceService.areOnline(usernames);
+
+                List<TempNotification> inbox = new ArrayList<>();
+                for (UsernameView user : users) {
+                    if (!Boolean.TRUE.equals(online.get(user.getUsername()))) {
+                        inbox.add(toTempNotification(broadcast, user));
+                    }
+                }
+                stored.add(store(inbox, 0));
+                recipients += users.size();
+                offline += inbox.size();
+                afterId = users.get(users.size() - 1).getId();
+            } while (users.size() == pageSize);
+
+            logger.info("Fanned out broadcast {} to {} {}: {} recipients, {} offline",
+                    broadcast.getId(), broadcast.getTargetType(), broadcast.getTarget(), recipients, offline);
+            return CompletableFuture.allOf(stored.toArray(new CompletableFuture[0]));
+        });
+    }
+
+    // Inbox entries for the recipients connected to this node without a subscription to the broadcast's topic
+    public CompletableFuture<Void> storeForUnsubscribed(BroadcastNotificationDto broadcast) {
+        if (!hasValidTarget(broadcast)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<String> unsubscribed =
+                localDelivery.usersNotSubscribedTo(topicFor(broadcast.getTargetType(), broadcast.getTarget()));
+        List<CompletableFuture<Void>> stored = new ArrayList<>();
+        int recipients = 0;
+        for (int from = 0; from < unsubscribed.size(); from += pageSize) {
+            List<String> usernames = unsubscribed.subList(from, Math.min(from + pageSize, unsubscribed.size()));
+            List<TempNotification> inbox = new ArrayList<>();
+            for (UsernameView user : recipientsAmong(broadcast, usernames)) {
+                inbox.add(toTempNotification(broadcast, user));
+            }
+            if (!inbox.isEmpty()) {
+                stored.add(store(inbox, 0));
+                recipients += inbox.size();
+            }
+        }
+        if (recipients > 0) {
+            logger.info("Stored broadcast {} for {} connected recipients not subscribed to its topic",
+                    broadcast.getId(), recipients);
+        }
+        return CompletableFuture.allOf(stored.toArray(new CompletableFuture[0]));
+    }
+
+    // Retries a failed page with exponential backoff, the other pages are not written again
+    private CompletableFuture<Void> store(List<TempNotification> inbox, int retries) {
+        CompletableFuture<Void> stored;
+        try {
+            stored = offlineInboxStore.appendAll(inbox);
+        } catch (RuntimeException e) {
+            stored = CompletableFuture.failedFuture(e);
+        }
+        return stored.exceptionallyCompose(error -> {
+            if (retries >= maxRetries) {
+                return CompletableFuture.failedFuture(error);
+            }
+            long backoffMs = retryBackoffMs << Math.min(retries, 20);
+            logger.warn("Failed to store {} broadcast inbox entries, retry {} in {} ms: {}", inbox.size(),
+                    retries + 1, backoffMs, error.getMessage());
+            return CompletableFuture.runAsync(() -> { },
+                            CompletableFuture.delayedExecutor(backoffMs, TimeUnit.MILLISECONDS))
+                    .thenCompose(ignored -> store(inbox, retries + 1));
+        });
+    }
+
+    private static boolean hasValidTarget(BroadcastNotificationDto broadcast) {
+        return broadcast.getTargetType() != null
+                && (broadcast.getTargetType() == NotificationTarget.ALL || broadcast.getTarget() != null);
+    }
+
+    private List<UsernameView> recipientsAmong(BroadcastNotificationDto broadcast, List<String> usernames) {
+        return switch (broadcast.getTargetType()) {
+            case GROUP -> userRepository.findUsernamesByGroupAndUsernameIn(broadcast.getTarget(), usernames);
+            case ROLE -> userRepository.findUsernamesByRoleAndUsernameIn(broadcast.getTarget(), usernames);
+            case ALL -> userRepository.findUsernamesByUsernameIn(usernames);
+        };
+    }
+
+    private List<UsernameView> recipients(BroadcastNotificationDto broadcast, long afterId, Pageable page) {
+        return switch (broadcast.getTargetType()) {
+            case GROUP -> userRepository.findUsernamesByGroupAfter(broadcast.getTarget(), afterId, page);
+            case ROLE -> userRepository.findUsernamesByRoleAfter(broadcast.getTarget(), afterId, page);
+            case ALL -> userRepository.findUsernamesAfter(afterId, page);
+        };
+    }
+
+    private static TempNotification toTempNotification(BroadcastNotificationDto broadcast, UsernameView user) {
+        TempNotification tempNotification = new TempNotification();
+        tempNotification.setUserId(user.getId());
+        tempNotification.setUsername(user.getUsername());
+        tempNotification.setMessage(broadcast.getMessage());
+        return tempNotification;
+    }
+}
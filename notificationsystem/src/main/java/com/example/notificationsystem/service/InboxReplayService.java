@@ -0,0 +1,197 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.config.OutboundFrameTracker;
+import com.example.notificationsystem.config.VirtualThreadConfig;
+import com.example.notificationsystem.dto.response.NotificationPageResponse;
+import com.example.notificationsystem.entity.NotificationDto;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes a user's offline inbox over the WebSocket as soon as they subscribe to /user/queue/notifications,
+ * so reconnecting clients no longer need GET /api/auth/notifications/{username}.
+ * <p>
+ * The replay starts once the user's rows still buffered by the inbox store are written, so it does not skip them.
+ * The inbox is read in chunks of notification.replay.chunk-size on a small pool whose size caps how many replays
+ * (and inbox queries) run at once during reconnect storms. A chunk is removed from the inbox only after its frames
+ * have been written to the WebSocket, as counted by {@link OutboundFrameTracker}; if the session closes first the
+ * chunk stays in the inbox and is replayed on the next subscribe, so the client may see it twice but never loses it.
+ * No chunk is sent while more than notification.replay.max-pending-frames frames wait in the session's send buffer,
+ * so a slow client holds the replay back instead of overflowing the buffer and getting disconnected.
+ * notification.replay.chunk-delay-ms is the polling interval for both waits.
+ * <p>
+ * Live notifications for the user that reach this node while the replay runs are held back via
+ * {@link #deferIfReplaying} and sent right after the backlog. That keeps the client's view in order only where the
+ * user's live notifications are delivered by the node holding the session: node routing
+ * (notification.routing.mode=node) or the local fast path. With shared routing another node may consume a live
+ * notification and send it through the broker relay, so it can arrive before the end of the backlog.
+ */
+@Service
+public class InboxReplayService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InboxReplayService.class);
+
+    private final OfflineInboxStore offlineInboxStore;
+    private final LocalNotificationDelivery localDelivery;
+    private final NotificationCoalescer notificationCoalescer;
+    private final OutboundFrameTracker outboundFrameTracker;
+    private final ScheduledExecutorService executor;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final long chunkDelayMs;
+    private final long maxPendingFrames;
+
+    // Users with a replay in progress on this node -> live deliveries held back until it completes
+    private final Map<String, Deque<Runnable>> replaying = new ConcurrentHashMap<>();
+
+    public InboxReplayService(OfflineInboxStore offlineInboxStore,
+                              LocalNotificationDelivery localDelivery,
+                              NotificationCoalescer notificationCoalescer,
+                              OutboundFrameTracker outboundFrameTracker,
+                              @Value("${notification.replay.on-subscribe:true}") boolean enabled,
+                              @Value("${notification.replay.chunk-size:100}") int chunkSize,
+                              @Value("${notification.replay.chunk-delay-ms:10}") long chunkDelayMs,
+                              @Value("${notification.replay.max-concurrent:4}") int maxConcurrent,
+                              @Value("${notification.replay.max-pending-frames:100}") long maxPendingFrames,
+                              @Value("${" + VirtualThreadConfig.ENABLED_PROPERTY + ":false}") boolean virtualThreads) {
+        this.offlineInboxStore = offlineInboxStore;
+        this.localDelivery = localDelivery;
+        this.notificationCoalescer = notificationCoalescer;
+        this.outboundFrameTracker = outboundFrameTracker;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.chunkDelayMs = chunkDelayMs;
+        this.maxPendingFrames = maxPendingFrames;
+        this.executor = Executors.newScheduledThreadPool(maxConcurrent,
+                VirtualThreadConfig.threadFactory("inbox-replay-", virtualThreads));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public void onSubscribe(String username, String sessionId, String subscriptionId) {
+        if (!enabled) {
+            return;
+        }
+        Deque<Runnable> held = new ArrayDeque<>();
+        if (replaying.putIfAbsent(username, held) != null) {
+            // Another session of this user is already draining the inbox
+            return;
+        }
+        offlineInboxStore.flushed(username).whenComplete((flushed, error) -> {
+            try {
+                executor.execute(() -> replayChunk(username, sessionId, subscriptionId, "", held));
+            } catch (RejectedExecutionException e) {
+                finish(username, held);
+            }
+        });
+    }
+
+    // Returns true if the delivery was queued behind a running replay; the caller must not send it then
+    public boolean deferIfReplaying(String username, Runnable delivery) {
+        Deque<Runnable> held = replaying.get(username);
+        if (held == null) {
+            return false;
+        }
+        synchronized (held) {
+            if (replaying.get(username) != held) {
+                return false;
+            }
+            held.add(delivery);
+            return true;
+        }
+    }
+
+    private void replayChunk(String username, String sessionId, String subscriptionId, String cursor,
+                             Deque<Runnable> held) {
+        try {
+            if (!localDelivery.hasSession(username, sessionId)) {
+                finish(username, held);
+                return;
+            }
+            if (outboundFrameTracker.pending(sessionId) > maxPendingFrames) {
+                // Slow client, let its send buffer drain first
+                executor.schedule(() -> replayChunk(username, sessionId, subscriptionId, cursor, held),
+                        chunkDelayMs, TimeUnit.MILLISECONDS);
+                return;
+            }
+            NotificationPageResponse page = offlineInboxStore.read(username, cursor, chunkSize);
+            List<NotificationDto> notifications = page.getNotifications();
+            if (notifications.isEmpty()) {
+                finish(username, held);
+                return;
+            }
+            if (notificationCoalescer.isEnabled() && notifications.size() > 1) {
+                // With coalescing on, a chunk goes out as one batched frame
+                localDelivery.deliverToSession(sessionId, subscriptionId, notifications,
+                        NotificationCoalescer.batchHeaders(notifications.size()));
+            } else {
+                for (NotificationDto notification : notifications) {
+                    localDelivery.deliverToSession(sessionId, subscriptionId, notification);
+                }
+            }
+            // The chunk's frames are queued synchronously, so the session's count now includes them
+            long queued = outboundFrameTracker.queued(sessionId);
+            if (queued == 0) {
+                // The tracker dropped the session, i.e. it closed while the chunk was sent
+                finish(username, held);
+                return;
+            }
+            awaitWritten(username, sessionId, subscriptionId, page, queued, held);
+        } catch (RuntimeException e) {
+            logger.error("Inbox replay for user {} failed", username, e);
+            finish(username, held);
+        }
+    }
+
+    // Acknowledges the chunk once the session has written its frames, then moves on to the next one
+    private void awaitWritten(String username, String sessionId, String subscriptionId, NotificationPageResponse page,
+                              long queued, Deque<Runnable> held) {
+        try {
+            if (!outboundFrameTracker.isWritten(sessionId, queued)) {
+                if (!localDelivery.hasSession(username, sessionId)) {
+                    // Closed before the chunk was out, keep it in the inbox
+                    finish(username, held);
+                    return;
+                }
+                executor.schedule(() -> awaitWritten(username, sessionId, subscriptionId, page, queued, held),
+                        chunkDelayMs, TimeUnit.MILLISECONDS);
+                return;
+            }
+            offlineInboxStore.acknowledge(username, page.getNextCursor());
+            if (page.isHasMore()) {
+                executor.schedule(() -> replayChunk(username, sessionId, subscriptionId, page.getNextCursor(), held),
+                        chunkDelayMs, TimeUnit.MILLISECONDS);
+            } else {
+                finish(username, held);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Inbox replay for user {} failed", username, e);
+            finish(username, held);
+        }
+    }
+
+    // Sends the live deliveries held during the replay, then lets new ones through directly
+    private void finish(String username, Deque<Runnable> held) {
+        synchronized (held) {
+            held.forEach(Runnable::run);
+            replaying.remove(username, held);
+        }
+        logger.debug("Inbox replay for user {} completed", username);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.dto.response.NotificationPageResponse;
+import com.example.notificationsystem.entity.NotificationDto;
+import com.example.notificationsystem.entity.TempNotification;
+import com.example.notificationsystem.exception.InvalidCursorException;
+import com.example.notificationsystem.repository.TempNotificationRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+// Postgres temp_notification table: batched writes through OfflineInboxWriter, DELETE ... RETURNING drains,
+// SELECT + DELETE by id for read and acknowledge
+@Service
+@ConditionalOnProperty(name = "notification.inbox.store", havingValue = "jpa", matchIfMissing = true)
+public class JpaOfflineInboxStore implements OfflineInboxStore {
+
+    private final OfflineInboxWriter offlineInboxWriter;
+    private final TempNotificationRepository tempNotificationRepository;
+
+    public JpaOfflineInboxStore(OfflineInboxWriter offlineInboxWriter,
+                                TempNotificationRepository tempNotificationRepository) {
+        this.offlineInboxWriter = offlineInboxWriter;
+        this.tempNotificationRepository = tempNotificationRepository;
+    }
+
+    @Override
+    public CompletableFuture<Void> appendAll(List<TempNotification> tempNotifications) {
+        return offlineInboxWriter.enqueueAll(tempNotifications);
+    }
+
+    @Override
+    public CompletableFuture<Void> flushed(String username) {
+        return offlineInboxWriter.flushed(username);
+    }
+
+    @Override
+    public NotificationPageResponse drain(String username, String after, int limit) {
+        long afterId = parseCursor(after);
+        return toPage(tempNotificationRepository.drainPage(username, afterId, limit), afterId, limit);
+    }
+
+    @Override
+    public NotificationPageResponse read(String username, String after, int limit) {
+        long afterId = parseCursor(after);
+        return toPage(tempNotificationRepository.readPage(username, afterId, limit), afterId, limit);
+    }
+
+    @Override
+    public void acknowledge(String username, String upTo) {
+        long upToId = parseCursor(upTo);
+        if (upToId > 0) {
+            tempNotificationRepository.deleteUpTo(username, upToId);
+        }
+    }
+
+    private NotificationPageResponse toPage(List<TempNotification> page, long afterId, int limit) {
+        List<NotificationDto> notifications = page.stream()
+                .map(this::toNotificationDto)
+                .collect(Collectors.toList());
+        long nextCursor = page.isEmpty() ? afterId : page.get(page.size() - 1).getId();
+        return new NotificationPageResponse(notifications, String.valueOf(nextCursor), page.size() == limit);
+    }
+
+    // Cursors are the id of the last returned row
+    private static long parseCursor(String after) {
+        if (after == null || after.isEmpty()) {
+            return 0;
+        }
+        try {
+            long afterId = Long.parseLong(after);
+            if (afterId < 0) {
+                throw new InvalidCursorException(after);
+            }
+            return afterId;
+        } catch (NumberFormatException e) {
+            throw new InvalidCursorException(after);
+        }
+    }
+
+    private NotificationDto toNotificationDto(TempNotification tempNotification) {
+        NotificationDto notificationDto = new NotificationDto();
+        notificationDto.setUserId(tempNotification.getUserId());
+        notificationDto.setMessage(tempNotification.getMessage());
+        return notificationDto;
+    }
+}
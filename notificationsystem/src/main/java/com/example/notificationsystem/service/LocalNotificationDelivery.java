@@ -0,0 +1,116 @@
+package com.example.notificationsystem.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpSession;
+import org.springframework.messaging.simp.user.SimpSubscription;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands a notification straight to the STOMP sessions a user holds on this node, bypassing RabbitMQ and the
+ * broker relay. Frames are written to the client outbound channel for every subscription to
+ * {@link #USER_DESTINATION}, exactly as the relay would deliver them.
+ */
+@Service
+public class LocalNotificationDelivery {
+
+    public static final String USER_DESTINATION = "/user/queue/notifications";
+
+    private final SimpUserRegistry userRegistry;
+    private final MessageChannel clientOutboundChannel;
+    private final MessageConverter messageConverter;
+
+    public LocalNotificationDelivery(SimpUserRegistry userRegistry,
+                                     @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+                                     SimpMessagingTemplate messagingTemplate) {
+        this.userRegistry = userRegistry;
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.messageConverter = messagingTemplate.getMessageConverter();
+    }
+
+    public boolean isLocal(String username) {
+        SimpUser user = userRegistry.getUser(username);
+        return user != null && user.hasSessions();
+    }
+
+    // Returns false if the user has no local subscription to the notifications queue
+    public boolean deliver(String username, Object payload) {
+        SimpUser user = userRegistry.getUser(username);
+        if (user == null) {
+            return false;
+        }
+        boolean delivered = false;
+        for (SimpSession session : user.getSessions()) {
+            for (SimpSubscription subscription : session.getSubscriptions()) {
+                if (USER_DESTINATION.equals(subscription.getDestination())) {
+                    clientOutboundChannel.send(toMessage(session.getId(), subscription.getId(), payload));
+                    delivered = true;
+                }
+            }
+        }
+        return delivered;
+    }
+
+    // Sends to one subscription of one session, e.g. to replay the offline inbox to a client that just subscribed
+    public void deliverToSession(String sessionId, String subscriptionId, Object payload) {
+        deliverToSession(sessionId, subscriptionId, payload, Map.of());
+    }
+
+    // Extra headers become native STOMP headers of the frame
+    public void deliverToSession(String sessionId, String subscriptionId, Object payload, Map<String, Object> headers) {
+        SimpMessageHeaderAccessor accessor = headerAccessor(sessionId, subscriptionId);
+        headers.forEach((name, value) -> accessor.setNativeHeader(name, String.valueOf(value)));
+        clientOutboundChannel.send(messageConverter.toMessage(payload, accessor.getMessageHeaders()));
+    }
+
+    // Users connected to this node of whom no session is subscribed to the destination
+    public List<String> usersNotSubscribedTo(String destination) {
+        List<String> usernames = new ArrayList<>();
+        for (SimpUser user : userRegistry.getUsers()) {
+            if (user.hasSessions() && !isSubscribed(user, destination)) {
+                usernames.add(user.getName());
+            }
+        }
+        return usernames;
+    }
+
+    private static boolean isSubscribed(SimpUser user, String destination) {
+        for (SimpSession session : user.getSessions()) {
+            for (SimpSubscription subscription : session.getSubscriptions()) {
+                if (destination.equals(subscription.getDestination())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public boolean hasSession(String username, String sessionId) {
+        SimpUser user = userRegistry.getUser(username);
+        return user != null && user.getSession(sessionId) != null;
+    }
+
+    private Message<?> toMessage(String sessionId, String subscriptionId, Object payload) {
+        return messageConverter.toMessage(payload, headerAccessor(sessionId, subscriptionId).getMessageHeaders());
+    }
+
+    private static SimpMessageHeaderAccessor headerAccessor(String sessionId, String subscriptionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(USER_DESTINATION);
+        accessor.setLeaveMutable(true);
+        return accessor;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.config.VirtualThreadConfig;
+import com.example.notificationsystem.entity.NotificationDto;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional coalescing of outbound notification frames per user, enabled with
+ * notification.delivery.coalesce.enabled=true.
+ * <p>
+ * Notifications for a user that arrive within notification.delivery.coalesce.window-ms of the first one, up to
+ * notification.delivery.coalesce.max-batch of them, are sent as a single frame whose body is a JSON array and
+ * which carries the {@link #BATCHED_HEADER} and {@link #BATCH_SIZE_HEADER} headers. A window holding a single
+ * notification is sent as a plain frame, exactly as without coalescing.
+ */
+@Service
+public class NotificationCoalescer {
+
+    public static final String BATCHED_HEADER = "x-batched";
+    public static final String BATCH_SIZE_HEADER = "x-batch-size";
+
+    // Sends one frame to a user; headers are null for a single notification
+    public interface FrameSender {
+        void send(String username, Object payload, Map<String, Object> headers);
+    }
+
+    private final boolean enabled;
+    private final long windowMs;
+    private final int maxBatch;
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<String, PendingFrame> pending = new ConcurrentHashMap<>();
+
+    public NotificationCoalescer(@Value("${notification.delivery.coalesce.enabled:false}") boolean enabled,
+                                 @Value("${notification.delivery.coalesce.window-ms:5}") long windowMs,
+                                 @Value("${notification.delivery.coalesce.max-batch:50}") int maxBatch,
+                                 @Value("${" + VirtualThreadConfig.ENABLED_PROPERTY + ":false}") boolean virtualThreads) {
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        this.maxBatch = maxBatch;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                VirtualThreadConfig.threadFactory("notification-coalescer-", virtualThreads));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public static Map<String, Object> batchHeaders(int size) {
+        return Map.of(BATCHED_HEADER, "true", BATCH_SIZE_HEADER, String.valueOf(size));
+    }
+
+    public void submit(String username, NotificationDto notification, FrameSender sender) {
+        if (!enabled) {
+            sender.send(username, notification, null);
+            return;
+        }
+        List<PendingFrame> ready = new ArrayList<>(2);
+        pending.compute(username, (key, frame) -> {
+            if (frame != null && frame.sender != sender) {
+                // Never mix delivery paths in one frame, send what is buffered first to keep the order
+                frame.timer.cancel(false);
+                ready.add(frame);
+                frame = null;
+            }
+            if (frame == null) {
+                PendingFrame created = new PendingFrame(sender);
+                created.timer = scheduler.schedule(() -> flush(key, created), windowMs, TimeUnit.MILLISECONDS);
+                frame = created;
+            }
+            frame.notifications.add(notification);
+            if (frame.notifications.size() >= maxBatch) {
+                frame.timer.cancel(false);
+                ready.add(frame);
+                return null;
+            }
+            return frame;
+        });
+        for (PendingFrame frame : ready) {
+            send(username, frame);
+        }
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        scheduler.shutdownNow();
+        for (String username : List.copyOf(pending.keySet())) {
+            PendingFrame frame = pending.remove(username);
+            if (frame != null) {
+                send(username, frame);
+            }
+        }
+    }
+
+    private void flush(String username, PendingFrame frame) {
+        if (pending.remove(username, frame)) {
+            send(username, frame);
+        }
+    }
+
+    private static void send(String username, PendingFrame frame) {
+        List<NotificationDto> notifications = frame.notifications;
+        if (notifications.size() == 1) {
+            frame.sender.send(username, notifications.get(0), null);
+        } else {
+            frame.sender.send(username, notifications, batchHeaders(notifications.size()));
+        }
+    }
+
+    private static final class PendingFrame {
+        private final FrameSender sender;
+        private final List<NotificationDto> notifications = new ArrayList<>();
+        private ScheduledFuture<?> timer;
+
+        private PendingFrame(FrameSender sender) {
+            this.sender = sender;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.notificationsystem.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Drops notifications that were already delivered or stored, e.g. records replayed after a rebalance, an offset
+ * reset or a Debezium re-snapshot, without any database read.
+ * <p>
+ * Processed notification ids are kept as bits in chunks of 2^20 ids (128 KB each). Only the newest
+ * notification.dedup.window-chunks chunks are kept, so memory stays bounded. Ids older than the window cannot be
+ * checked; they are delivered and counted in "notifications.dedup.too-old" rather than dropped.
+ * A redelivered record carries the same id as its first delivery, so dedup by id also covers repeated offsets.
+ * <p>
+ * Listeners call {@link #tryClaim} before routing a notification, then {@link #markProcessed} once it is published
+ * or stored, or {@link #release} if that failed. A claimed id counts as a duplicate until it is released, so two
+ * copies of one event handled at once by different workers are not both delivered.
+ * <p>
+ * The bits are mirrored to Redis ({@code dedup:notifications:{chunk}} bitmaps) in pipelined batches every
+ * notification.dedup.flush-interval-ms, and merged back on startup and whenever the node is assigned partitions
+ * (see KafkaConfig), so ids marked by the previous owner of a partition are known before its records are replayed.
+ */
+@Service
+public class NotificationDeduplicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationDeduplicator.class);
+
+    private static final int CHUNK_BITS = 20;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final String CHUNK_KEY_PREFIX = "dedup:notifications:";
+    private static final String CHUNK_INDEX_KEY = "dedup:notifications:chunks";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final boolean enabled;
+    private final int windowChunks;
+    private final Duration retention;
+    private final Counter duplicates;
+    private final Counter tooOld;
+
+    // Chunk index -> processed bits of that chunk, guarded by this
+    private final TreeMap<Long, BitSet> chunks = new TreeMap<>();
+    // Ids claimed by a listener whose processing has not finished yet, guarded by this
+    private final Set<Long> inFlight = new HashSet<>();
+    // Ids processed since the last flush to Redis
+    private final ConcurrentLinkedQueue<Long> unflushed = new ConcurrentLinkedQueue<>();
+
+    public NotificationDeduplicator(RedisTemplate<String, Object> redisTemplate,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${notification.dedup.enabled:true}") boolean enabled,
+                                    @Value("${notification.dedup.window-chunks:16}") int windowChunks,
+                                    @Value("${notification.dedup.retention:7d}") Duration retention) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.windowChunks = windowChunks;
+        this.retention = retention;
+        this.duplicates = meterRegistry.counter("notifications.duplicates");
+        this.tooOld = meterRegistry.counter("notifications.dedup.too-old");
+    }
+
+    // Merges the newest window from Redis into the local bits
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        Set<Object> indexes = redisTemplate.opsForZSet().reverseRange(CHUNK_INDEX_KEY, 0, windowChunks - 1);
+        if (indexes == null || indexes.isEmpty()) {
+            return;
+        }
+        List<Long> chunkIndexes = new ArrayList<>(indexes.size());
+        for (Object index : indexes) {
+            chunkIndexes.add(Long.parseLong(index.toString()));
+        }
+        List<Object> bitmaps = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long chunk : chunkIndexes) {
+                connection.stringCommands().get(chunkKey(chunk).getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        }, null);
+        int loaded = 0;
+        synchronized (this) {
+            for (int i = 0; i < chunkIndexes.size(); i++) {
+                if (bitmaps.get(i) instanceof byte[] bitmap) {
+                    BitSet bits = chunk(chunkIndexes.get(i));
+                    if (bits != null) {
+                        bits.or(fromRedisBitmap(bitmap));
+                        loaded++;
+                    }
+                }
+            }
+        }
+        logger.info("Merged {} dedup chunks from Redis", loaded);
+    }
+
+    // Returns false if the notification was already processed or is being processed; otherwise the caller owns it
+    // until markProcessed or release
+    public synchronized boolean tryClaim(long id) {
+        if (!enabled) {
+            return true;
+        }
+        long chunk = id >>> CHUNK_BITS;
+        BitSet bits = chunks.get(chunk);
+        if (bits == null && isBeforeWindow(chunk)) {
+            tooOld.increment();
+            return true;
+        }
+        if ((bits != null && bits.get((int) (id & (CHUNK_SIZE - 1)))) || !inFlight.add(id)) {
+            duplicates.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // Called once the notification is published or stored
+    public void markProcessed(long id) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            inFlight.remove(id);
+            BitSet bits = chunk(id >>> CHUNK_BITS);
+            if (bits == null) {
+                return;
+            }
+            bits.set((int) (id & (CHUNK_SIZE - 1)));
+        }
+        unflushed.add(id);
+    }
+
+    // Gives up a claim after a failed attempt, so a later copy of the event is processed again
+    public synchronized void release(long id) {
+        inFlight.remove(id);
+    }
+
+    // Mirrors the ids processed since the last run to Redis in one pipeline
+    @Scheduled(fixedDelayString = "${notification.dedup.flush-interval-ms:200}")
+    @PreDestroy
+    public void flush() {
+        if (unflushed.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>();
+        for (Long id = unflushed.poll(); id != null; id = unflushed.poll()) {
+            ids.add(id);
+        }
+        long retentionSeconds = retention.toSeconds();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            Set<Long> touched = new HashSet<>();
+            for (long id : ids) {
+                long chunk = id >>> CHUNK_BITS;
+                connection.stringCommands().setBit(chunkKey(chunk).getBytes(StandardCharsets.UTF_8),
+                        id & (CHUNK_SIZE - 1), true);
+                touched.add(chunk);
+            }
+            byte[] indexKey = CHUNK_INDEX_KEY.getBytes(StandardCharsets.UTF_8);
+            for (long chunk : touched) {
+                connection.keyCommands().expire(chunkKey(chunk).getBytes(StandardCharsets.UTF_8), retentionSeconds);
+                connection.zSetCommands().zAdd(indexKey, chunk, String.valueOf(chunk).getBytes(StandardCharsets.UTF_8));
+            }
+            connection.keyCommands().expire(indexKey, retentionSeconds);
+            return null;
+        });
+    }
+
+    // The bits of a chunk, created if it is within the window, or null if it is older than the window.
+    // Caller holds the lock.
+    private BitSet chunk(long chunk) {
+        BitSet bits = chunks.get(chunk);
+        if (bits == null) {
+            if (isBeforeWindow(chunk)) {
+                return null;
+            }
+            bits = new BitSet();
+            chunks.put(chunk, bits);
+            while (chunks.size() > windowChunks) {
+                chunks.pollFirstEntry();
+            }
+        }
+        return bits;
+    }
+
+    // Once the window is full, chunks below its oldest chunk have been evicted and can no longer be checked
+    private boolean isBeforeWindow(long chunk) {
+        return chunks.size() >= windowChunks && chunk < chunks.firstKey();
+    }
+
+    // Redis numbers bits from the most significant bit of each byte, BitSet from the least significant
+    private static BitSet fromRedisBitmap(byte[] bitmap) {
+        BitSet bits = new BitSet(bitmap.length * 8);
+        for (int i = 0; i < bitmap.length; i++) {
+            int value = bitmap[i] & 0xFF;
+            if (value == 0) {
+                continue;
+            }
+            for (int bit = 0; bit < 8; bit++) {
+                if ((value & (0x80 >>> bit)) != 0) {
+                    bits.set(i * 8 + bit);
+                }
+            }
+        }
+        return bits;
+    }
+
+    private static String chunkKey(long chunk) {
+        return CHUNK_KEY_PREFIX + chunk;
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.config.VirtualThreadConfig;
+import com.example.notificationsystem.entity.NotificationDto;
+import com.example.notificationsystem.entity.NotificationPriority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Optional per-user digest mode, enabled with notification.digest.enabled=true.
+ * <p>
+ * The first notification for a user opens a window of notification.digest.window-ms; everything that arrives for the
+ * same user until it closes is folded into one digest and routed once, so a burst costs one presence check, one
+ * publish or one inbox row. A digest is an ordinary {@link NotificationDto} for the newest notification with
+ * digest_count set and the notification.digest.max-items newest notifications as items; its message is a summary
+ * that also serves as the single offline inbox entry. A window holding one notification routes it unchanged.
+ * <p>
+ * Each caller's future completes when the digest containing its notification has been routed, so Kafka offsets
+ * are still only committed once the notification is published or stored.
+ */
+@Service
+public class NotificationDigester {
+
+    // Length of the temp_notification.message column
+    private static final int MAX_SUMMARY_LENGTH = 255;
+
+    private final boolean enabled;
+    private final long windowMs;
+    private final int maxItems;
+    private final int maxCount;
+    private final ScheduledExecutorService scheduler;
+    private final Counter folded;
+
+    private final Map<Long, PendingDigest> pending = new ConcurrentHashMap<>();
+
+    public NotificationDigester(MeterRegistry meterRegistry,
+                                @Value("${notification.digest.enabled:false}") boolean enabled,
+                                @Value("${notification.digest.window-ms:2000}") long windowMs,
+                                @Value("${notification.digest.max-items:5}") int maxItems,
+                                @Value("${notification.digest.max-count:1000}") int maxCount,
+                                @Value("${notification.digest.flush-threads:2}") int flushThreads,
+                                @Value("${" + VirtualThreadConfig.ENABLED_PROPERTY + ":false}") boolean virtualThreads) {
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        this.maxItems = maxItems;
+        this.maxCount = maxCount;
+        this.scheduler = Executors.newScheduledThreadPool(flushThreads,
+                VirtualThreadConfig.threadFactory("notification-digest-", virtualThreads));
+        this.folded = meterRegistry.counter("notifications.digest.folded");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // Adds the notification to its user's open window; router is called once per window with the digest
+    public CompletableFuture<Void> submit(NotificationDto notification,
+                                          Function<NotificationDto, CompletableFuture<Void>> router) {
+        // Urgent notifications are never held back or folded
+        if (!enabled || notification.getPriority() == NotificationPriority.URGENT) {
+            return router.apply(notification);
+        }
+        CompletableFuture<Void> routed = new CompletableFuture<>();
+        List<PendingDigest> full = new ArrayList<>(1);
+        pending.compute(notification.getUserId(), (userId, digest) -> {
+            if (digest == null) {
+                PendingDigest created = new PendingDigest(router);
+                created.timer = scheduler.schedule(() -> flush(userId, created), windowMs, TimeUnit.MILLISECONDS);
+                digest = created;
+            }
+            digest.add(notification, routed, maxItems);
+            if (digest.count >= maxCount) {
+                digest.timer.cancel(false);
+                full.add(digest);
+                return null;
+            }
+            return digest;
+        });
+        for (PendingDigest digest : full) {
+            scheduler.execute(() -> route(digest));
+        }
+        return routed;
+    }
+
+    // Folds the notifications of one batch per user, keeping the order of each user's first notification
+    public List<NotificationDto> fold(List<NotificationDto> notifications) {
+        if (!enabled || notifications.size() < 2) {
+            return notifications;
+        }
+        Map<Long, List<NotificationDto>> byUser = new LinkedHashMap<>();
+        List<NotificationDto> digests = new ArrayList<>();
+        for (NotificationDto notification : notifications) {
+            if (notification.getPriority() == NotificationPriority.URGENT) {
+                digests.add(notification);
+                continue;
+            }
+            byUser.computeIfAbsent(notification.getUserId(), userId -> new ArrayList<>()).add(notification);
+        }
+        for (List<NotificationDto> userNotifications : byUser.values()) {
+            Deque<NotificationDto> latest = new ArrayDeque<>(maxItems);
+            for (NotificationDto notification : userNotifications) {
+                if (latest.size() == maxItems) {
+                    latest.removeFirst();
+                }
+                latest.addLast(notification);
+            }
+            digests.add(toDigest(userNotifications.size(), latest));
+        }
+        return digests;
+    }
+
+    private void flush(Long userId, PendingDigest digest) {
+        if (pending.remove(userId, digest)) {
+            route(digest);
+        }
+    }
+
+    private void route(PendingDigest digest) {
+        CompletableFuture<Void> routed;
+        try {
+            routed = digest.router.apply(toDigest(digest.count, digest.latest));
+        } catch (RuntimeException e) {
+            routed = CompletableFuture.failedFuture(e);
+        }
+        routed.whenComplete((ignored, error) -> {
+            for (CompletableFuture<Void> waiter : digest.waiters) {
+                if (error != null) {
+                    waiter.completeExceptionally(error);
+                } else {
+                    waiter.complete(null);
+                }
+            }
+        });
+    }
+
+    private NotificationDto toDigest(int count, Deque<NotificationDto> latest) {
+        NotificationDto newest = latest.getLast();
+        if (count == 1) {
+            return newest;
+        }
+        folded.increment(count - 1);
+        NotificationDto digest = new NotificationDto();
+        digest.setId(newest.getId());
+        digest.setUserId(newest.getUserId());
+        digest.setCreatedAt(newest.getCreatedAt());
+        digest.setSource(newest.getSource());
+        digest.setPriority(newest.getPriority());
+        digest.setDigestCount(count);
+        List<NotificationDto> items = new ArrayList<>(latest);
+        digest.setItems(items);
+        digest.setMessage(summary(count, items));
+        return digest;
+    }
+
+    // "12 new notifications: newest; older; ..." cut to the inbox column length
+    private static String summary(int count, List<NotificationDto> items) {
+        StringBuilder summary = new StringBuilder().append(count).append(" new notifications: ");
+        for (int i = items.size() - 1; i >= 0; i--) {
+            summary.append(items.get(i).getMessage());
+            if (i > 0) {
+                summary.append("; ");
+            }
+        }
+        if (summary.length() <= MAX_SUMMARY_LENGTH) {
+            return summary.toString();
+        }
+        return summary.substring(0, MAX_SUMMARY_LENGTH - 3) + "...";
+    }
+
+    private static final class PendingDigest {
+        private final Function<NotificationDto, CompletableFuture<Void>> router;
+        private final Deque<NotificationDto> latest = new ArrayDeque<>();
+        private final List<CompletableFuture<Void>> waiters = new ArrayList<>();
+        private int count;
+        private ScheduledFuture<?> timer;
+
+        private PendingDigest(Function<NotificationDto, CompletableFuture<Void>> router) {
+            this.router = router;
+        }
+
+        private void add(NotificationDto notification, CompletableFuture<Void> waiter, int maxItems) {
+            if (latest.size() == maxItems) {
+                latest.removeFirst();
+            }
+            latest.addLast(notification);
+            waiters.add(waiter);
+            count++;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.entity.NotificationDto;
+import com.example.notificationsystem.entity.NotificationPriority;
+import com.example.notificationsystem.entity.TempNotification;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes notifications for online users.
+ * <p>
+ * In "shared" routing mode every message goes to notificationQueue and is picked up by any node. In "node" mode
+ * the message is routed to the queue of each node that holds a session of the recipient (see
+ * {@link PresenceService#getNodes}), falling back to the shared queue when no live node is known.
+ * <p>
+ * With notification.delivery.local-fast-path enabled, recipients connected to this node are served in-process by
+ * {@link LocalNotificationDelivery}; RabbitMQ is then only used for their sessions on other nodes. The path taken
+ * is counted in "notifications.delivered" and timed in "notifications.dispatch", both tagged with path=local|node|shared.
+ * <p>
+ * RabbitMQ publishes go through {@link RabbitConfirmPublisher}; the returned futures complete once every
+ * publish of the call has been confirmed by the broker. A notification the broker did not accept is stored in the
+ * recipient's offline inbox instead and counted in "notifications.publish.inbox-fallback".
+ */
+@Service
+public class NotificationPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationPublisher.class);
+
+    public static final String EXCHANGE = "notificationsExchange";
+    public static final String SHARED_ROUTING_KEY = "notificationRoutingKey";
+    public static final String LOW_PRIORITY_ROUTING_KEY = "notificationRoutingKey.low";
+    public static final String URGENT_ROUTING_KEY = "notificationRoutingKey.urgent";
+    public static final String BULK_ROUTING_KEY = "notificationRoutingKey.bulk";
+    public static final String NODE_ROUTING_KEY_PREFIX = "node.";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final RabbitConfirmPublisher confirmPublisher;
+    private final PresenceService presenceService;
+    private final LocalNotificationDelivery localDelivery;
+    private final InboxReplayService inboxReplayService;
+    private final OfflineInboxStore offlineInboxStore;
+    private final boolean nodeAffine;
+    private final boolean localFastPath;
+
+    private final Counter localDelivered;
+    private final Counter nodeDelivered;
+    private final Counter sharedDelivered;
+    private final Counter inboxFallback;
+    private final Timer localTimer;
+    private final Timer rabbitTimer;
+
+    public NotificationPublisher(RabbitTemplate rabbitTemplate,
+                                 RabbitConfirmPublisher confirmPublisher,
+                                 PresenceService presenceService,
+                                 LocalNotificationDelivery localDelivery,
+                                 InboxReplayService inboxReplayService,
+                                 OfflineInboxStore offlineInboxStore,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${notification.routing.mode:shared}") String routingMode,
+                                 @Value("${notification.delivery.local-fast-path:false}") boolean localFastPath) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.confirmPublisher = confirmPublisher;
+        this.presenceService = presenceService;
+        this.localDelivery = localDelivery;
+        this.inboxReplayService = inboxReplayService;
+        this.offlineInboxStore = offlineInboxStore;
+        this.nodeAffine = "node".equals(routingMode);
+        this.localFastPath = localFastPath;
+        this.localDelivered = meterRegistry.counter("notifications.delivered", "path", "local");
+        this.nodeDelivered = meterRegistry.counter("notifications.delivered", "path", "node");
+        this.sharedDelivered = meterRegistry.counter("notifications.delivered", "path", "shared");
+        this.inboxFallback = meterRegistry.counter("notifications.publish.inbox-fallback");
+        this.localTimer = meterRegistry.timer("notifications.dispatch", "path", "local");
+        this.rabbitTimer = meterRegistry.timer("notifications.dispatch", "path", "rabbit");
+    }
+
+    // Rate-limited notifications: one shared queue drained by a single consumer, so they never hold up regular traffic
+    public CompletableFuture<Void> publishLowPriority(List<NotificationDto> notifications, Map<Long, String> usernames) {
+        List<CompletableFuture<Void>> confirms = new ArrayList<>(notifications.size());
+        for (NotificationDto notification : notifications) {
+            confirms.add(inboxOnFailure(confirmPublisher.send(EXCHANGE, LOW_PRIORITY_ROUTING_KEY, notification),
+                    notification, usernames.get(notification.getUserId())));
+        }
+        return CompletableFuture.allOf(confirms.toArray(new CompletableFuture[0]));
+    }
+
+    public CompletableFuture<Void> publish(NotificationDto notification, String username) {
+        return publishAll(List.of(notification), Map.of(notification.getUserId(), username));
+    }
+
+    public CompletableFuture<Void> publishAll(List<NotificationDto> notifications, Map<Long, String> usernames) {
+        if (notifications.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Map<String, Set<String>> nodes = nodeAffine || localFastPath
+                ? presenceService.getNodes(new HashSet<>(usernames.values()))
+                : Map.of();
+
+        List<NotificationDto> remote = new ArrayList<>(notifications.size());
+        Set<NotificationDto> deliveredLocally = Collections.newSetFromMap(new IdentityHashMap<>());
+        long start = System.nanoTime();
+        for (NotificationDto notification : notifications) {
+            String username = usernames.get(notification.getUserId());
+            if (deliverLocally(notification, username, nodes)) {
+                deliveredLocally.add(notification);
+                if (otherNodes(nodes.get(username)).isEmpty()) {
+                    continue;
+                }
+            }
+            remote.add(notification);
+        }
+        if (!deliveredLocally.isEmpty()) {
+            localTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        if (remote.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return rabbitTimer.record(() -> publishToRabbitMQ(remote, usernames, nodes, deliveredLocally));
+    }
+
+    // Local delivery is only exact if no other node holds a session, or if node routing can reach those nodes alone
+    private boolean deliverLocally(NotificationDto notification, String username, Map<String, Set<String>> nodes) {
+        if (!localFastPath || !localDelivery.isLocal(username)) {
+            return false;
+        }
+        if (!nodeAffine && !otherNodes(nodes.get(username)).isEmpty()) {
+            return false;
+        }
+        // A running inbox replay for this user sends the notification once the backlog is out
+        if (!inboxReplayService.deferIfReplaying(username, () -> localDelivery.deliver(username, notification))
+                && !localDelivery.deliver(username, notification)) {
+            return false;
+        }
+        localDelivered.increment();
+        return true;
+    }
+
+    // Publishes every message on one dedicated channel instead of checking one out per message;
+    // confirms are collected asynchronously, so the publishes are pipelined
+    private CompletableFuture<Void> publishToRabbitMQ(List<NotificationDto> notifications, Map<Long, String> usernames,
+                                                      Map<String, Set<String>> nodes, Set<NotificationDto> deliveredLocally) {
+        List<CompletableFuture<Void>> confirms = new ArrayList<>(notifications.size());
+        rabbitTemplate.invoke(operations -> {
+            for (NotificationDto notification : notifications) {
+                String username = usernames.get(notification.getUserId());
+                // Urgent and bulk notifications always use their own lanes, node queues only carry NORMAL
+                Set<String> userNodes = nodeAffine && notification.getPriority() == NotificationPriority.NORMAL
+                        ? nodes.get(username)
+                        : null;
+                if (userNodes == null || userNodes.isEmpty()) {
+                    confirms.add(inboxOnFailure(confirmPublisher.send(operations, EXCHANGE,
+                            sharedRoutingKey(notification.getPriority()), notification), notification, username));
+                    sharedDelivered.increment();
+                    continue;
+                }
+                // One inbox entry at most, however many of the user's nodes could not be reached
+                List<CompletableFuture<Void>> sends = new ArrayList<>(userNodes.size());
+                for (String node : deliveredLocally.contains(notification) ? otherNodes(userNodes) : userNodes) {
+                    sends.add(confirmPublisher.send(operations, EXCHANGE, nodeRoutingKey(node), notification));
+                    nodeDelivered.increment();
+                }
+                confirms.add(inboxOnFailure(CompletableFuture.allOf(sends.toArray(new CompletableFuture[0])),
+                        notification, username));
+            }
+            return null;
+        });
+        return CompletableFuture.allOf(confirms.toArray(new CompletableFuture[0]));
+    }
+
+    // Keeps a notification the broker would not take, so the user still gets it from the inbox
+    private CompletableFuture<Void> inboxOnFailure(CompletableFuture<Void> confirmed, NotificationDto notification,
+                                                   String username) {
+        return confirmed.exceptionallyCompose(error -> {
+            logger.warn("Storing notification {} for user {} in the offline inbox: {}", notification.getId(),
+                    username, error.getMessage());
+            inboxFallback.increment();
+            TempNotification tempNotification = new TempNotification();
+            tempNotification.setUserId(notification.getUserId());
+            tempNotification.setUsername(username);
+            tempNotification.setMessage(notification.getMessage());
+            return offlineInboxStore.append(tempNotification);
+        });
+    }
+
+    private Set<String> otherNodes(Set<String> userNodes) {
+        if (userNodes == null || userNodes.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> others = new HashSet<>(userNodes);
+        others.remove(presenceService.getNodeId());
+        return others;
+    }
+
+    public static String sharedRoutingKey(NotificationPriority priority) {
+        return switch (priority) {
+            case URGENT -> URGENT_ROUTING_KEY;
+            case BULK -> BULK_ROUTING_KEY;
+            case NORMAL -> SHARED_ROUTING_KEY;
+        };
+    }
+
+    public static String nodeRoutingKey(String nodeId) {
+        return NODE_ROUTING_KEY_PREFIX + nodeId;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.entity.NotificationDto;
+import com.example.notificationsystem.entity.NotificationPriority;
+import com.example.notificationsystem.util.StripedTokenBuckets;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Token-bucket limits per recipient (user_id) and per source (the notifications.source column), so that one
+ * flooding producer or one flooded user cannot monopolize live delivery. Notifications without a source share
+ * one source bucket.
+ * <p>
+ * Notifications over either limit are not dropped: the callers divert them according to
+ * notification.ratelimit.overflow, either into the offline inbox ("inbox") or onto the low-priority
+ * RabbitMQ lane ("lane"). Every check is counted in "notifications.ratelimit", tagged with limiter=recipient|source
+ * and result=allowed|limited.
+ */
+@Service
+public class NotificationRateLimiter {
+
+    public enum Overflow { INBOX, LANE }
+
+    private static final long UNKNOWN_SOURCE = 0;
+
+    private final boolean enabled;
+    private final Overflow overflow;
+    private final StripedTokenBuckets recipientBuckets;
+    private final StripedTokenBuckets sourceBuckets;
+
+    private final Counter recipientAllowed;
+    private final Counter recipientLimited;
+    private final Counter sourceAllowed;
+    private final Counter sourceLimited;
+
+    public NotificationRateLimiter(MeterRegistry meterRegistry,
+                                   @Value("${notification.ratelimit.enabled:false}") boolean enabled,
+                                   @Value("${notification.ratelimit.overflow:inbox}") String overflow,
+                                   @Value("${notification.ratelimit.stripes:65536}") int stripes,
+                                   @Value("${notification.ratelimit.recipient.rate:20}") long recipientRate,
+                                   @Value("${notification.ratelimit.recipient.burst:50}") long recipientBurst,
+                                   @Value("${notification.ratelimit.source.rate:2000}") long sourceRate,
+                                   @Value("${notification.ratelimit.source.burst:5000}") long sourceBurst) {
+        this.enabled = enabled;
+        this.overflow = Overflow.valueOf(overflow.toUpperCase());
+        this.recipientBuckets = new StripedTokenBuckets(stripes, recipientRate, recipientBurst);
+        // Few sources exist, a small table keeps them apart
+        this.sourceBuckets = new StripedTokenBuckets(1024, sourceRate, sourceBurst);
+        this.recipientAllowed = meterRegistry.counter("notifications.ratelimit", "limiter", "recipient", "result", "allowed");
+        this.recipientLimited = meterRegistry.counter("notifications.ratelimit", "limiter", "recipient", "result", "limited");
+        this.sourceAllowed = meterRegistry.counter("notifications.ratelimit", "limiter", "source", "result", "allowed");
+        this.sourceLimited = meterRegistry.counter("notifications.ratelimit", "limiter", "source", "result", "limited");
+    }
+
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    // True if the notification may take the normal live path
+    public boolean tryAcquire(NotificationDto notification) {
+        // Urgent notifications are never diverted
+        if (!enabled || notification.getPriority() == NotificationPriority.URGENT) {
+            return true;
+        }
+        long source = notification.getSource() == null ? UNKNOWN_SOURCE : notification.getSource().hashCode();
+        if (!sourceBuckets.tryAcquire(source)) {
+            sourceLimited.increment();
+            return false;
+        }
+        sourceAllowed.increment();
+        if (!recipientBuckets.tryAcquire(notification.getUserId())) {
+            recipientLimited.increment();
+            return false;
+        }
+        recipientAllowed.increment();
+        return true;
+    }
+}
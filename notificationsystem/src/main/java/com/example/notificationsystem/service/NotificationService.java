@@ -1,4 +1,100 @@
 package com.example.notificationsystem.service;
 
+import com.example.notificationsystem.entity.NotificationDto;
+import com.example.notificationsystem.entity.TempNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+@Service
 public class NotificationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationService.class);
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private UsernameCache usernameCache;
+
+    @Autowired
+    private NotificationPublisher notificationPublisher;
+
+    @Autowired
+    private OfflineInboxStore offlineInboxStore;
+
+    @Autowired
+    private NotificationDigester notificationDigester;
+
+    @Autowired
+    private NotificationRateLimiter notificationRateLimiter;
+
+    // Routes a whole batch with at most one user query and one pipelined presence lookup (cache misses only)
+    // and one channel for the publishes. The returned future completes once the online publishes are confirmed
+    // and the offline entries are stored.
+    public CompletableFuture<Void> dispatchBatch(List<NotificationDto> batch) {
+        if (batch.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // In digest mode a user's notifications within one poll become a single digest
+        List<NotificationDto> notifications = notificationDigester.fold(batch);
+
+        Map<Long, String> usernames = resolveUsernames(notifications);
+        Map<String, Boolean> onlineUsers = presenceService.areOnline(new HashSet<>(usernames.values()));
+
+        List<NotificationDto> online = new ArrayList<>();
+        List<NotificationDto> lowPriority = new ArrayList<>();
+        List<TempNotification> offline = new ArrayList<>();
+        for (NotificationDto notification : notifications) {
+            String username = usernames.get(notification.getUserId());
+            if (username == null) {
+                logger.warn("Dropping notification {} for unknown user: {}", notification.getId(), notification.getUserId());
+                continue;
+            }
+            if (!notificationRateLimiter.tryAcquire(notification)) {
+                // Over its recipient or source limit: diverted, never dropped
+                if (notificationRateLimiter.getOverflow() == NotificationRateLimiter.Overflow.LANE) {
+                    lowPriority.add(notification);
+                } else {
+                    offline.add(toTempNotification(notification, username));
+                }
+            } else if (Boolean.TRUE.equals(onlineUsers.get(username))) {
+                online.add(notification);
+            } else {
+                offline.add(toTempNotification(notification, username));
+            }
+        }
+
+        CompletableFuture<Void> published = notificationPublisher.publishAll(online, usernames);
+        CompletableFuture<Void> diverted = lowPriority.isEmpty()
+                ? CompletableFuture.completedFuture(null)
+                : notificationPublisher.publishLowPriority(lowPriority, usernames);
+        logger.debug("Dispatched batch: {} online, {} low priority, {} offline",
+                online.size(), lowPriority.size(), offline.size());
+        return CompletableFuture.allOf(published, diverted, offlineInboxStore.appendAll(offline));
+    }
+
+    private Map<Long, String> resolveUsernames(List<NotificationDto> notifications) {
+        Set<Long> userIds = new HashSet<>();
+        for (NotificationDto notification : notifications) {
+            userIds.add(notification.getUserId());
+        }
+        return usernameCache.getUsernames(userIds);
+    }
+
+    private TempNotification toTempNotification(NotificationDto notification, String username) {
+        TempNotification tempNotification = new TempNotification();
+        tempNotification.setUserId(notification.getUserId());
+        tempNotification.setUsername(username);
+        tempNotification.setMessage(notification.getMessage());
+        return tempNotification;
+    }
 }
@@ -0,0 +1,36 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.dto.response.NotificationPageResponse;
+import com.example.notificationsystem.entity.TempNotification;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Storage engine for notifications addressed to users who are offline, selected with notification.inbox.store
+ * ("jpa" for the temp_notification table, "redis" for one Redis stream per user).
+ */
+public interface OfflineInboxStore {
+
+    // The future completes once the entries are durable in the store
+    CompletableFuture<Void> appendAll(List<TempNotification> tempNotifications);
+
+    default CompletableFuture<Void> append(TempNotification tempNotification) {
+        return appendAll(List.of(tempNotification));
+    }
+
+    // Completes once the user's entries accepted by appendAll so far are visible to drain, for stores that buffer
+    default CompletableFuture<Void> flushed(String username) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    // Removes and returns up to limit of the user's oldest entries after the given cursor ("" for the start).
+    // Throws InvalidCursorException for a cursor this store did not issue.
+    NotificationPageResponse drain(String username, String after, int limit);
+
+    // Like drain, but leaves the entries in place until they are acknowledged
+    NotificationPageResponse read(String username, String after, int limit);
+
+    // Removes the user's entries up to and including the cursor of a page returned by read
+    void acknowledge(String username, String upTo);
+}
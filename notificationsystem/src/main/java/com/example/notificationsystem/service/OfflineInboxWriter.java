@@ -0,0 +1,248 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.entity.TempNotification;
+import com.example.notificationsystem.repository.TempNotificationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.NonTransientDataAccessResourceException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers offline notifications and writes them to the temp table from a single background thread.
+ * A flush happens once notification.inbox.writer.batch-size rows are pending or the oldest pending row has waited
+ * notification.inbox.writer.flush-interval-ms, whichever comes first. Buffered writes are grouped into JDBC batches
+ * of at most batch-size rows (rewritten into multi-row INSERTs by the driver, see reWriteBatchedInserts); a single
+ * write larger than that, such as a fan-out page, is a batch of its own. Every batch is one transaction.
+ * <p>
+ * Transient failures, such as a lost connection, are retried with backoff at most
+ * notification.inbox.writer.max-retries times. Rows the database rejects (a {@link DataIntegrityViolationException}
+ * and other non-transient errors) are not retried: the batch is split into its writes, so only the write holding the
+ * bad row fails. Failed writes are counted in "inbox.writer.failed" and fail their futures.
+ * <p>
+ * Callers get a future that completes once their rows are committed; every Kafka listener acknowledges its
+ * offsets only then, including for records routed online, which wait for their publish confirms. The buffer holds
+ * at most notification.inbox.writer.queue-capacity rows, counted per row rather than per call; when it is full,
+ * {@link #enqueueAll} blocks, which throttles the consumer.
+ */
+@Service
+@ConditionalOnProperty(name = "notification.inbox.store", havingValue = "jpa", matchIfMissing = true)
+public class OfflineInboxWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(OfflineInboxWriter.class);
+
+    private static final long MAX_RETRY_BACKOFF_MS = 5000;
+
+    private final TempNotificationRepository tempNotificationRepository;
+    private final BlockingQueue<PendingWrite> pending = new LinkedBlockingQueue<>();
+    // Username -> newest buffered write holding one of their rows; writes complete in queue order
+    private final Map<String, CompletableFuture<Void>> pendingByUser = new ConcurrentHashMap<>();
+    // One permit per buffered row, released once the row is flushed
+    private final Semaphore capacity;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final int maxRetries;
+    private final Timer flushTimer;
+    private final Counter failed;
+
+    private volatile boolean running = true;
+    private Thread flusher;
+
+    public OfflineInboxWriter(TempNotificationRepository tempNotificationRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${notification.inbox.writer.batch-size:1000}") int batchSize,
+                              @Value("${notification.inbox.writer.flush-interval-ms:50}") long flushIntervalMs,
+                              @Value("${notification.inbox.writer.queue-capacity:10000}") int queueCapacity,
+                              @Value("${notification.inbox.writer.max-retries:10}") int maxRetries) {
+        this.tempNotificationRepository = tempNotificationRepository;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.queueCapacity = queueCapacity;
+        this.maxRetries = maxRetries;
+        this.capacity = new Semaphore(queueCapacity);
+        this.flushTimer = meterRegistry.timer("inbox.writer.flush");
+        this.failed = meterRegistry.counter("inbox.writer.failed");
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher = new Thread(this::run, "offline-inbox-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Drains what is already buffered before the application context closes
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    public CompletableFuture<Void> enqueue(TempNotification tempNotification) {
+        return enqueueAll(List.of(tempNotification));
+    }
+
+    public CompletableFuture<Void> enqueueAll(List<TempNotification> tempNotifications) {
+        if (tempNotifications.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // A write larger than the whole buffer waits for it to be empty instead of forever
+        int permits = Math.min(tempNotifications.size(), queueCapacity);
+        PendingWrite write = new PendingWrite(tempNotifications, permits, new CompletableFuture<>());
+        try {
+            capacity.acquire(permits);
+            pending.add(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            write.done().completeExceptionally(e);
+            return write.done();
+        }
+        for (TempNotification tempNotification : tempNotifications) {
+            pendingByUser.put(tempNotification.getUsername(), write.done());
+        }
+        write.done().whenComplete((stored, error) -> tempNotifications.forEach(
+                tempNotification -> pendingByUser.remove(tempNotification.getUsername(), write.done())));
+        return write.done();
+    }
+
+    // Completes once every row for the user buffered before this call has been written (or given up on), which
+    // takes at most about flush-interval-ms unless the database is failing
+    public CompletableFuture<Void> flushed(String username) {
+        CompletableFuture<Void> newest = pendingByUser.get(username);
+        return newest == null ? CompletableFuture.completedFuture(null) : newest;
+    }
+
+    private void run() {
+        while (running || !pending.isEmpty()) {
+            try {
+                PendingWrite first = running ? pending.poll(flushIntervalMs, TimeUnit.MILLISECONDS) : pending.poll();
+                if (first == null) {
+                    continue;
+                }
+                flush(collectBatch(first));
+            } catch (InterruptedException e) {
+                // stop() was called, loop once more to drain the buffer
+            }
+        }
+    }
+
+    // Gathers more writes until the batch is full or the first one has waited flushIntervalMs
+    private List<PendingWrite> collectBatch(PendingWrite first) throws InterruptedException {
+        List<PendingWrite> batch = new ArrayList<>();
+        batch.add(first);
+        int rows = first.rows().size();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (rows < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            PendingWrite next = running && remaining > 0
+                    ? pending.poll(remaining, TimeUnit.NANOSECONDS)
+                    : pending.poll();
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            rows += next.rows().size();
+        }
+        return batch;
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        int rows = 0;
+        try {
+            List<PendingWrite> chunk = new ArrayList<>();
+            int chunkRows = 0;
+            for (PendingWrite write : batch) {
+                if (chunkRows > 0 && chunkRows + write.rows().size() > batchSize) {
+                    store(chunk);
+                    chunk = new ArrayList<>();
+                    chunkRows = 0;
+                }
+                chunk.add(write);
+                chunkRows += write.rows().size();
+                rows += write.rows().size();
+            }
+            store(chunk);
+        } finally {
+            batch.forEach(write -> capacity.release(write.permits()));
+        }
+        logger.debug("Flushed {} offline notifications", rows);
+    }
+
+    // Inserts the writes' rows in one batch; if the database rejects it, each write on its own, so that a bad row
+    // only fails the write it came with
+    private void store(List<PendingWrite> writes) {
+        List<TempNotification> rows = new ArrayList<>();
+        for (PendingWrite write : writes) {
+            rows.addAll(write.rows());
+        }
+        try {
+            insert(rows);
+        } catch (RuntimeException e) {
+            if (isRejected(e) && writes.size() > 1) {
+                writes.forEach(write -> store(List.of(write)));
+                return;
+            }
+            logger.error("Dropping {} offline notifications that could not be stored", rows.size(), e);
+            failed.increment(rows.size());
+            writes.forEach(write -> write.done().completeExceptionally(e));
+            return;
+        }
+        writes.forEach(write -> write.done().complete(null));
+    }
+
+    // Retries transient failures; throws once the rows are rejected, the retries are used up or the writer stops
+    private void insert(List<TempNotification> rows) {
+        long backoffMs = 100;
+        for (int retries = 0; ; retries++) {
+            try {
+                flushTimer.record(() -> tempNotificationRepository.insertAll(rows));
+                return;
+            } catch (RuntimeException e) {
+                if (isRejected(e) || retries >= maxRetries || !running) {
+                    throw e;
+                }
+                logger.warn("Offline inbox flush of {} rows failed, retry {} in {} ms", rows.size(), retries + 1,
+                        backoffMs, e);
+                sleepQuietly(backoffMs);
+                backoffMs = Math.min(backoffMs * 2, MAX_RETRY_BACKOFF_MS);
+            }
+        }
+    }
+
+    // Constraint violations, values too long for their column and the like fail the same way on every retry;
+    // a database that cannot be reached is a resource failure, which can clear up
+    private static boolean isRejected(RuntimeException e) {
+        return e instanceof NonTransientDataAccessException && !(e instanceof NonTransientDataAccessResourceException);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            // shutdown requested, the caller re-checks the running flag
+        }
+    }
+
+    private record PendingWrite(List<TempNotification> rows, int permits, CompletableFuture<Void> done) {
+    }
+}
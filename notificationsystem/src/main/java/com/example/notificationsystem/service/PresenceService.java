@@ -0,0 +1,268 @@
+package com.example.notificationsystem.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.example.notificationsystem.config.NodeIdentity;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Connection-accurate presence. A user is online while at least one STOMP session is open on a live node.
+ * <p>
+ * Every user has their own Redis hash {@code presence:user:{username}} mapping session id to "nodeId:device",
+ * so presence is spread over many small keys instead of one hot set. Each node refreshes the TTL of the hashes
+ * of the users it holds sessions for on every heartbeat; when a node dies its entries expire after
+ * notification.presence.ttl. Its own liveness is published as {@code presence:node:{nodeId}} with the same TTL.
+ * <p>
+ * Reads go through a per-node near-cache that is updated by {@link #PRESENCE_CHANNEL} events whenever a user's
+ * sessions change; entries expire after notification.presence.max-staleness and a miss falls back to EXISTS
+ * (pipelined for batches). The same events keep the user to node map used for node-affine routing coherent.
+ */
+@Service
+public class PresenceService implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceService.class);
+
+    public static final String PRESENCE_CHANNEL = "presence-events";
+
+    private static final String USER_KEY_PREFIX = "presence:user:";
+    private static final String NODE_KEY_PREFIX = "presence:node:";
+
+    private static final char ONLINE = '+';
+    private static final char OFFLINE = '-';
+    private static final char SESSIONS_CHANGED = '~';
+
+    // HSET and EXPIRE in one atomic step, so a crash in between cannot leave a presence hash without a TTL
+    private static final RedisScript<Long> ADD_SESSION = new DefaultRedisScript<>(
+            "redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) "
+                    + "return redis.call('EXPIRE', KEYS[1], ARGV[3])", Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Cache<String, Boolean> nearCache;
+    private final Cache<String, Set<String>> userNodes;
+    private final Cache<String, Boolean> liveNodes;
+    private final String nodeId;
+    private final Duration ttl;
+
+    // Sessions held by this node: session id -> username
+    private final Map<String, String> localSessions = new ConcurrentHashMap<>();
+
+    public PresenceService(RedisTemplate<String, Object> redisTemplate,
+                           MeterRegistry meterRegistry,
+                           NodeIdentity nodeIdentity,
+                           @Value("${notification.presence.ttl:60s}") Duration ttl,
+                           @Value("${notification.presence.near-cache-size:200000}") long maximumSize,
+                           @Value("${notification.presence.max-staleness:5s}") Duration maxStaleness) {
+        this.redisTemplate = redisTemplate;
+        this.nodeId = nodeIdentity.getId();
+        this.ttl = ttl;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(maxStaleness)
+                .recordStats()
+                .build();
+        this.userNodes = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(maxStaleness)
+                .build();
+        this.liveNodes = Caffeine.newBuilder()
+                .expireAfterWrite(maxStaleness)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, nearCache, "presence");
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void sessionConnected(String username, String sessionId, String device) {
+        String key = userKey(username);
+        localSessions.put(sessionId, username);
+        redisTemplate.execute(ADD_SESSION, List.of(key), sessionId, nodeId + ":" + device,
+                String.valueOf(ttl.toSeconds()));
+        nearCache.put(username, Boolean.TRUE);
+        redisTemplate.convertAndSend(PRESENCE_CHANNEL, ONLINE + username);
+    }
+
+    public void sessionDisconnected(String sessionId) {
+        String username = localSessions.remove(sessionId);
+        if (username == null) {
+            return;
+        }
+        String key = userKey(username);
+        redisTemplate.opsForHash().delete(key, sessionId);
+        // Redis drops the hash together with its last field
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
+            nearCache.put(username, Boolean.FALSE);
+            redisTemplate.convertAndSend(PRESENCE_CHANNEL, OFFLINE + username);
+        } else {
+            redisTemplate.convertAndSend(PRESENCE_CHANNEL, SESSIONS_CHANGED + username);
+        }
+    }
+
+    public boolean isOnline(String username) {
+        return nearCache.get(username, key -> Boolean.TRUE.equals(redisTemplate.hasKey(userKey(key))));
+    }
+
+    // Near-cache hits are answered locally; all misses share one pipelined round trip
+    public Map<String, Boolean> areOnline(Collection<String> usernames) {
+        if (usernames.isEmpty()) {
+            return Map.of();
+        }
+        return nearCache.getAll(usernames, missing -> {
+            List<String> keys = new ArrayList<>(missing.size());
+            for (String username : missing) {
+                keys.add(userKey(username));
+            }
+            List<Object> exists = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : keys) {
+                    connection.keyCommands().exists(key.getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+            Map<String, Boolean> loaded = new HashMap<>();
+            int i = 0;
+            for (String username : missing) {
+                loaded.put(username, Boolean.TRUE.equals(exists.get(i++)));
+            }
+            return loaded;
+        });
+    }
+
+    // Live nodes holding at least one session of each user; users without sessions are absent from the result
+    public Map<String, Set<String>> getNodes(Collection<String> usernames) {
+        if (usernames.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Set<String>> nodes = userNodes.getAll(usernames, missing -> {
+            List<String> keys = new ArrayList<>(missing.size());
+            for (String username : missing) {
+                keys.add(userKey(username));
+            }
+            List<Object> sessions = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String key : keys) {
+                    connection.hashCommands().hVals(key.getBytes(StandardCharsets.UTF_8));
+                }
+                return null;
+            });
+            Map<String, Set<String>> loaded = new HashMap<>();
+            int i = 0;
+            for (String username : missing) {
+                loaded.put(username, toNodeIds((List<?>) sessions.get(i++)));
+            }
+            return loaded;
+        });
+        Map<String, Set<String>> live = new HashMap<>();
+        nodes.forEach((username, userNodeIds) -> {
+            Set<String> liveNodeIds = new HashSet<>();
+            for (String node : userNodeIds) {
+                if (isNodeAlive(node)) {
+                    liveNodeIds.add(node);
+                }
+            }
+            if (!liveNodeIds.isEmpty()) {
+                live.put(username, liveNodeIds);
+            }
+        });
+        return live;
+    }
+
+    // Session values are "nodeId:device"
+    private static Set<String> toNodeIds(List<?> sessionValues) {
+        if (sessionValues == null || sessionValues.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> nodeIds = new HashSet<>();
+        for (Object value : sessionValues) {
+            String session = String.valueOf(value);
+            int separator = session.indexOf(':');
+            nodeIds.add(separator < 0 ? session : session.substring(0, separator));
+        }
+        return nodeIds;
+    }
+
+    // Keeps this node and the presence hashes of its connected users alive
+    @Scheduled(fixedDelayString = "${notification.presence.heartbeat-interval-ms:20000}")
+    public void heartbeat() {
+        Set<String> usernames = Set.copyOf(localSessions.values());
+        long ttlSeconds = ttl.toSeconds();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().setEx(nodeKey(nodeId).getBytes(StandardCharsets.UTF_8), ttlSeconds,
+                    String.valueOf(System.currentTimeMillis()).getBytes(StandardCharsets.UTF_8));
+            for (String username : usernames) {
+                connection.keyCommands().expire(userKey(username).getBytes(StandardCharsets.UTF_8), ttlSeconds);
+            }
+            return null;
+        });
+        logger.debug("Presence heartbeat for node {} refreshed {} users", nodeId, usernames.size());
+    }
+
+    public boolean isNodeAlive(String node) {
+        if (nodeId.equals(node)) {
+            return true;
+        }
+        return liveNodes.get(node, key -> Boolean.TRUE.equals(redisTemplate.hasKey(nodeKey(key))));
+    }
+
+    // Removes this node's sessions on a clean shutdown instead of waiting for them to expire
+    @PreDestroy
+    public void removeLocalSessions() {
+        for (String sessionId : Set.copyOf(localSessions.keySet())) {
+            sessionDisconnected(sessionId);
+        }
+        redisTemplate.delete(nodeKey(nodeId));
+    }
+
+    // Applies presence changes published by any node (including this one)
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String event = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (event.isEmpty()) {
+            return;
+        }
+        String username = event.substring(1);
+        if (event.charAt(0) == ONLINE) {
+            nearCache.put(username, Boolean.TRUE);
+            userNodes.invalidate(username);
+        } else if (event.charAt(0) == OFFLINE) {
+            // Another node may still hold a session for this user, let the next read ask Redis
+            nearCache.invalidate(username);
+            userNodes.invalidate(username);
+        } else if (event.charAt(0) == SESSIONS_CHANGED) {
+            userNodes.invalidate(username);
+        } else {
+            logger.warn("Ignoring unknown presence event: {}", event);
+        }
+    }
+
+    private static String userKey(String username) {
+        return USER_KEY_PREFIX + username;
+    }
+
+    private static String nodeKey(String node) {
+        return NODE_KEY_PREFIX + node;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.config.VirtualThreadConfig;
+import com.example.notificationsystem.exception.PublishNotConfirmedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes with correlated publisher confirms (spring.rabbitmq.publisher-confirm-type=correlated) without
+ * waiting for them: every send returns a future that completes when the broker acks the message.
+ * <p>
+ * Messages are published as mandatory (spring.rabbitmq.publisher-returns=true), so a message no queue is bound for,
+ * e.g. one routed to the expired queue of a node that has gone away, is returned instead of being acked and dropped.
+ * A returned message fails its future at once, without retries, as resending it cannot be routed either.
+ * <p>
+ * Nacks, failed sends and confirms lost with a closed channel are retried with exponential backoff, at most
+ * notification.rabbit.confirms.max-retries times. At most notification.rabbit.confirms.max-outstanding messages may
+ * be unconfirmed; beyond that {@link #send} waits up to notification.rabbit.confirms.acquire-timeout-ms for a
+ * confirm, which holds back the Kafka listener thread calling it. A message that runs out of retries or of wait
+ * time fails its future with {@link PublishNotConfirmedException}; {@link NotificationPublisher} then stores it in
+ * the recipient's offline inbox.
+ * <p>
+ * A retried message is re-sent after any message published in the meantime. Per-user order therefore survives a
+ * retry only where the caller waits for the confirm before publishing the user's next notification, which the
+ * keyed listener mode does; in record and batch mode a retried notification can arrive after a later one.
+ */
+@Service
+public class RabbitConfirmPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(RabbitConfirmPublisher.class);
+
+    private final RabbitTemplate rabbitTemplate;
+    private final Semaphore outstanding;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final int maxRetries;
+    private final long acquireTimeoutMs;
+    private final ScheduledExecutorService retryScheduler;
+
+    private final Counter nacked;
+    private final Counter returned;
+    private final Counter failed;
+
+    public RabbitConfirmPublisher(RabbitTemplate rabbitTemplate,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${notification.rabbit.confirms.max-outstanding:10000}") int maxOutstanding,
+                                  @Value("${notification.rabbit.confirms.initial-backoff-ms:100}") long initialBackoffMs,
+                                  @Value("${notification.rabbit.confirms.max-backoff-ms:5000}") long maxBackoffMs,
+                                  @Value("${notification.rabbit.confirms.max-retries:10}") int maxRetries,
+                                  @Value("${notification.rabbit.confirms.acquire-timeout-ms:5000}") long acquireTimeoutMs,
+                                  @Value("${" + VirtualThreadConfig.ENABLED_PROPERTY + ":false}") boolean virtualThreads) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.outstanding = new Semaphore(maxOutstanding);
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.maxRetries = maxRetries;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(
+                VirtualThreadConfig.threadFactory("rabbit-confirm-retry-", virtualThreads));
+        this.nacked = meterRegistry.counter("notifications.publish.nacked");
+        this.returned = meterRegistry.counter("notifications.publish.returned");
+        this.failed = meterRegistry.counter("notifications.publish.failed");
+        meterRegistry.gauge("notifications.publish.outstanding", outstanding,
+                permits -> maxOutstanding - permits.availablePermits());
+        // The returned message is also set on its CorrelationData before the confirm completes, see attempt
+        rabbitTemplate.setReturnsCallback(message -> {
+            returned.increment();
+            logger.warn("Publish to {} with key {} returned: {} {}", message.getExchange(), message.getRoutingKey(),
+                    message.getReplyCode(), message.getReplyText());
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+    }
+
+    public CompletableFuture<Void> send(String exchange, String routingKey, Object payload) {
+        return send(rabbitTemplate, exchange, routingKey, payload);
+    }
+
+    // Sends on the given operations, e.g. the dedicated channel of RabbitTemplate.invoke
+    public CompletableFuture<Void> send(RabbitOperations operations, String exchange, String routingKey, Object payload) {
+        // Backpressure: wait for a confirm once too many messages are in flight, but not indefinitely
+        CompletableFuture<Void> confirmed = new CompletableFuture<>();
+        try {
+            if (!outstanding.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return fail(confirmed, "no confirm window within " + acquireTimeoutMs + " ms", exchange, routingKey);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return fail(confirmed, "interrupted waiting for a confirm window", exchange, routingKey);
+        }
+        confirmed.whenComplete((ignored, error) -> outstanding.release());
+        attempt(operations, exchange, routingKey, payload, confirmed, 0);
+        return confirmed;
+    }
+
+    private void attempt(RabbitOperations operations, String exchange, String routingKey, Object payload,
+                         CompletableFuture<Void> confirmed, int retries) {
+        CorrelationData correlationData = new CorrelationData();
+        try {
+            operations.convertAndSend(exchange, routingKey, payload, correlationData);
+        } catch (AmqpException e) {
+            retry(exchange, routingKey, payload, confirmed, retries, e.getMessage());
+            return;
+        }
+        correlationData.getFuture().whenComplete((confirm, error) -> {
+            if (error == null && confirm.isAck() && correlationData.getReturned() != null) {
+                // Acked, but no queue took it
+                fail(confirmed, "unroutable, returned with " + correlationData.getReturned().getReplyText(),
+                        exchange, routingKey);
+            } else if (error == null && confirm.isAck()) {
+                confirmed.complete(null);
+            } else {
+                retry(exchange, routingKey, payload, confirmed, retries,
+                        error != null ? error.getMessage() : confirm.getReason());
+            }
+        });
+    }
+
+    // Retries go through the template, the channel of the original send may be gone by now
+    private void retry(String exchange, String routingKey, Object payload, CompletableFuture<Void> confirmed,
+                       int retries, String reason) {
+        nacked.increment();
+        if (retries >= maxRetries) {
+            fail(confirmed, reason + ", gave up after " + retries + " retries", exchange, routingKey);
+            return;
+        }
+        long backoffMs = Math.min(maxBackoffMs, initialBackoffMs << Math.min(retries, 20));
+        logger.warn("Publish to {} with key {} not confirmed ({}), retry {} in {} ms",
+                exchange, routingKey, reason, retries + 1, backoffMs);
+        try {
+            retryScheduler.schedule(() -> attempt(rabbitTemplate, exchange, routingKey, payload, confirmed, retries + 1),
+                    backoffMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            fail(confirmed, reason + ", shutting down", exchange, routingKey);
+        }
+    }
+
+    private CompletableFuture<Void> fail(CompletableFuture<Void> confirmed, String reason, String exchange,
+                                         String routingKey) {
+        failed.increment();
+        confirmed.completeExceptionally(new PublishNotConfirmedException(
+                "Publish to " + exchange + " with key " + routingKey + " failed: " + reason));
+        return confirmed;
+    }
+}
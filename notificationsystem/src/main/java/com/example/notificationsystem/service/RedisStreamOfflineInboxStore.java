@@ -0,0 +1,162 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.dto.response.NotificationPageResponse;
+import com.example.notificationsystem.entity.NotificationDto;
+import com.example.notificationsystem.entity.TempNotification;
+import com.example.notificationsystem.exception.InvalidCursorException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
+
+/**
+ * Offline inbox kept as one capped Redis stream per user ({@code inbox:{username}}), so short-lived entries never
+ * touch Postgres. Appends are pipelined XADD + approximate MAXLEN trim + EXPIRE, one round trip per batch; drains
+ * read a page with XRANGE and remove it with XDEL in one Lua script, so concurrent drains of the same inbox never
+ * return the same entry. The replay reads pages with XRANGE alone and acknowledges them afterwards with another
+ * script that deletes everything up to the page's last id.
+ */
+@Service
+@ConditionalOnProperty(name = "notification.inbox.store", havingValue = "redis")
+public class RedisStreamOfflineInboxStore implements OfflineInboxStore {
+
+    private static final String KEY_PREFIX = "inbox:";
+    private static final String USER_ID_FIELD = "userId";
+    private static final String MESSAGE_FIELD = "message";
+    // Cursors are stream entry ids, "<millis>-<sequence>"
+    private static final Pattern STREAM_ID = Pattern.compile("\\d{1,19}-\\d{1,19}");
+
+    // XRANGE and XDEL of one page in one atomic step; returns the page as [[id, [field, value, ...]], ...]
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> DRAIN_PAGE = new DefaultRedisScript<>(
+            "local entries = redis.call('XRANGE', KEYS[1], ARGV[1], '+', 'COUNT', ARGV[2]) "
+                    + "for _, entry in ipairs(entries) do redis.call('XDEL', KEYS[1], entry[1]) end "
+                    + "return entries", List.class);
+
+    // DRAIN_PAGE without the XDEL, run as a script so that the reply is deserialized the same way
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> READ_PAGE = new DefaultRedisScript<>(
+            "return redis.call('XRANGE', KEYS[1], ARGV[1], '+', 'COUNT', ARGV[2])", List.class);
+
+    // XDEL of every entry up to and including ARGV[1]; returns the number of deleted entries
+    private static final RedisScript<Long> ACKNOWLEDGE = new DefaultRedisScript<>(
+            "local entries = redis.call('XRANGE', KEYS[1], '-', ARGV[1]) "
+                    + "for _, entry in ipairs(entries) do redis.call('XDEL', KEYS[1], entry[1]) end "
+                    + "return #entries", Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final long maxLength;
+    private final Duration retention;
+
+    public RedisStreamOfflineInboxStore(RedisTemplate<String, Object> redisTemplate,
+                                        @Value("${notification.inbox.redis.max-length:10000}") long maxLength,
+                                        @Value("${notification.inbox.redis.retention:7d}") Duration retention) {
+        this.redisTemplate = redisTemplate;
+        this.maxLength = maxLength;
+        this.retention = retention;
+    }
+
+    @Override
+    public CompletableFuture<Void> appendAll(List<TempNotification> tempNotifications) {
+        if (tempNotifications.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long retentionSeconds = retention.toSeconds();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (TempNotification tempNotification : tempNotifications) {
+                byte[] key = bytes(inboxKey(tempNotification.getUsername()));
+                Map<byte[], byte[]> fields = new HashMap<>();
+                fields.put(bytes(USER_ID_FIELD), bytes(String.valueOf(tempNotification.getUserId())));
+                fields.put(bytes(MESSAGE_FIELD), bytes(tempNotification.getMessage()));
+                connection.streamCommands().xAdd(MapRecord.create(key, fields));
+                connection.streamCommands().xTrim(key, maxLength, true);
+                connection.keyCommands().expire(key, retentionSeconds);
+            }
+            return null;
+        });
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public NotificationPageResponse drain(String username, String after, int limit) {
+        List<?> entries = redisTemplate.execute(DRAIN_PAGE, List.of(inboxKey(username)), start(after),
+                String.valueOf(limit));
+        return toPage(entries, after, limit);
+    }
+
+    @Override
+    public NotificationPageResponse read(String username, String after, int limit) {
+        List<?> entries = redisTemplate.execute(READ_PAGE, List.of(inboxKey(username)), start(after),
+                String.valueOf(limit));
+        return toPage(entries, after, limit);
+    }
+
+    @Override
+    public void acknowledge(String username, String upTo) {
+        if (upTo == null || upTo.isEmpty()) {
+            return;
+        }
+        if (!STREAM_ID.matcher(upTo).matches()) {
+            throw new InvalidCursorException(upTo);
+        }
+        redisTemplate.execute(ACKNOWLEDGE, List.of(inboxKey(username)), upTo);
+    }
+
+    private static String start(String after) {
+        if (after == null || after.isEmpty()) {
+            return "-";
+        }
+        if (!STREAM_ID.matcher(after).matches()) {
+            throw new InvalidCursorException(after);
+        }
+        return "(" + after;
+    }
+
+    private NotificationPageResponse toPage(List<?> entries, String after, int limit) {
+        if (entries == null || entries.isEmpty()) {
+            return new NotificationPageResponse(List.of(), after == null ? "" : after, false);
+        }
+
+        List<NotificationDto> notifications = new ArrayList<>(entries.size());
+        String lastId = null;
+        for (Object entry : entries) {
+            List<?> idAndFields = (List<?>) entry;
+            lastId = (String) idAndFields.get(0);
+            List<?> fieldList = (List<?>) idAndFields.get(1);
+            Map<Object, Object> fields = new HashMap<>();
+            for (int i = 0; i + 1 < fieldList.size(); i += 2) {
+                fields.put(fieldList.get(i), fieldList.get(i + 1));
+            }
+            notifications.add(toNotificationDto(fields));
+        }
+        return new NotificationPageResponse(notifications, lastId, entries.size() == limit);
+    }
+
+    private NotificationDto toNotificationDto(Map<Object, Object> fields) {
+        NotificationDto notificationDto = new NotificationDto();
+        notificationDto.setUserId(Long.parseLong(String.valueOf(fields.get(USER_ID_FIELD))));
+        notificationDto.setMessage((String) fields.get(MESSAGE_FIELD));
+        return notificationDto;
+    }
+
+    private static String inboxKey(String username) {
+        return KEY_PREFIX + username;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded in-process cache of user id to username for the delivery hot path.
+ * Entries are kept coherent by {@link com.example.notificationsystem.consumer.UserChangeKafkaConsumer},
+ * which applies Debezium events from the users table; the expiry is only a safety net.
+ * Hit/miss counters are published as the "cache.*" meters with cache=usernames.
+ */
+@Service
+public class UsernameCache {
+
+    private final UserRepository userRepository;
+    private final Cache<Long, String> cache;
+
+    public UsernameCache(UserRepository userRepository,
+                         MeterRegistry meterRegistry,
+                         @Value("${notification.user-cache.maximum-size:100000}") long maximumSize,
+                         @Value("${notification.user-cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "usernames");
+    }
+
+    // Returns null if the user does not exist
+    public String getUsername(long userId) {
+        return cache.get(userId, id -> userRepository.findUsernameById(id).orElse(null));
+    }
+
+    // Loads all misses with a single query; unknown ids are absent from the result
+    public Map<Long, String> getUsernames(Collection<Long> userIds) {
+        return cache.getAll(userIds, missing -> {
+            Map<Long, String> loaded = new HashMap<>();
+            for (UserRepository.UsernameView user : userRepository.findUsernamesByIdIn(new ArrayList<>(missing))) {
+                loaded.put(user.getId(), user.getUsername());
+            }
+            return loaded;
+        });
+    }
+
+    public void put(long userId, String username) {
+        cache.put(userId, username);
+    }
+
+    public void evict(long userId) {
+        cache.invalidate(userId);
+    }
+}
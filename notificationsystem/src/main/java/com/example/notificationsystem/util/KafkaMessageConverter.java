@@ -1,4 +1,214 @@
 package com.example.notificationsystem.util;
 
+import com.example.notificationsystem.entity.BroadcastNotificationDto;
+import com.example.notificationsystem.entity.NotificationDto;
+import com.example.notificationsystem.entity.NotificationPriority;
+import com.example.notificationsystem.entity.NotificationTarget;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Decodes Debezium change events for the notifications table straight into a {@link NotificationDto}
+ * (for broadcast_notifications into a {@link BroadcastNotificationDto}, for users into a {@link UserChange})
+ * using Jackson's streaming parser,
+ * so no JsonNode tree is built for the (large) schema block. Works with and without the JsonConverter schema envelope.
+ */
+@Component
 public class KafkaMessageConverter {
+
+    private static final Logger logger = LoggerFactory.getLogger(KafkaMessageConverter.class);
+
+    private static final String OP_DELETE = "d";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    // Reads the "after" (or "before") object of a change event, the parser is positioned on its START_OBJECT
+    private interface AfterReader<T> {
+        T read(JsonParser parser) throws IOException;
+    }
+
+    // A users row after an insert or update; username is null when the row was deleted
+    public record UserChange(long id, String username) {
+    }
+
+    // Returns null for tombstones, deletes and events without an "after" image
+    public NotificationDto toNotificationDto(String message) throws IOException {
+        return decode(message, this::readAfter);
+    }
+
+    // Same contract as toNotificationDto, for the broadcast_notifications table
+    public BroadcastNotificationDto toBroadcastNotificationDto(String message) throws IOException {
+        return decode(message, this::readBroadcastAfter);
+    }
+
+    // Returns null for tombstones; deletes carry the id from the "before" image
+    public UserChange toUserChange(String message) throws IOException {
+        return decode(message, this::readUserAfter, this::readUserBefore);
+    }
+
+    private <T> T decode(String message, AfterReader<T> afterReader) throws IOException {
+        return decode(message, afterReader, null);
+    }
+
+    private <T> T decode(String message, AfterReader<T> afterReader, AfterReader<T> beforeReader) throws IOException {
+        if (message == null || message.isEmpty()) {
+            return null;
+        }
+        try (JsonParser parser = jsonFactory.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            return readEnvelope(parser, afterReader, beforeReader);
+        }
+    }
+
+    // Reads either the {"schema":..., "payload":...} wrapper or the bare payload object. A delete returns what
+    // beforeReader made of the "before" image, or null without one.
+    private <T> T readEnvelope(JsonParser parser, AfterReader<T> afterReader, AfterReader<T> beforeReader)
+            throws IOException {
+        T after = null;
+        T before = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "payload":
+                    if (value != JsonToken.START_OBJECT) {
+                        return null;
+                    }
+                    return readEnvelope(parser, afterReader, beforeReader);
+                case "op":
+                    // Debezium writes "op" after "before" and "after"; a delete has a null after image, so stop here
+                    if (OP_DELETE.equals(parser.getText())) {
+                        return before;
+                    }
+                    break;
+                case "before":
+                    if (beforeReader != null && value == JsonToken.START_OBJECT) {
+                        before = beforeReader.read(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "after":
+                    after = value == JsonToken.START_OBJECT ? afterReader.read(parser) : null;
+                    break;
+                default:
+                    // "schema", "before", "source", "transaction", ...
+                    parser.skipChildren();
+            }
+        }
+        return after;
+    }
+
+    private NotificationDto readAfter(JsonParser parser) throws IOException {
+        NotificationDto notificationDto = new NotificationDto();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "id":
+                    notificationDto.setId(parser.getLongValue());
+                    break;
+                case "user_id":
+                    notificationDto.setUserId(parser.getLongValue());
+                    break;
+                case "message":
+                    notificationDto.setMessage(parser.getText());
+                    break;
+                case "source":
+                    notificationDto.setSource(parser.getText());
+                    break;
+                case "priority":
+                    notificationDto.setPriority(NotificationPriority.parse(parser.getText()));
+                    break;
+                case "created_at":
+                    // Epoch timestamp (millis with time.precision.mode=connect); string encodings are left unset
+                    if (value == JsonToken.VALUE_NUMBER_INT) {
+                        notificationDto.setCreatedAt(parser.getLongValue());
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return notificationDto;
+    }
+
+    private UserChange readUserAfter(JsonParser parser) throws IOException {
+        return readUser(parser, false);
+    }
+
+    private UserChange readUserBefore(JsonParser parser) throws IOException {
+        return readUser(parser, true);
+    }
+
+    private UserChange readUser(JsonParser parser, boolean deleted) throws IOException {
+        long id = 0;
+        String username = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "id":
+                    id = parser.getLongValue();
+                    break;
+                case "username":
+                    username = parser.getText();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return new UserChange(id, deleted ? null : username);
+    }
+
+    private BroadcastNotificationDto readBroadcastAfter(JsonParser parser) throws IOException {
+        BroadcastNotificationDto broadcast = new BroadcastNotificationDto();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "id":
+                    broadcast.setId(parser.getLongValue());
+                    break;
+                case "message":
+                    broadcast.setMessage(parser.getText());
+                    break;
+                case "created_at":
+                    if (value == JsonToken.VALUE_NUMBER_INT) {
+                        broadcast.setCreatedAt(parser.getLongValue());
+                    }
+                    break;
+                case "target_type":
+                    // Left null when unknown, FanOutService then drops the broadcast instead of failing the record
+                    broadcast.setTargetType(NotificationTarget.parse(parser.getText()));
+                    if (broadcast.getTargetType() == null) {
+                        logger.warn("Unknown broadcast target_type: {}", parser.getText());
+                    }
+                    break;
+                case "target":
+                    broadcast.setTarget(parser.getText());
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return broadcast;
+    }
 }
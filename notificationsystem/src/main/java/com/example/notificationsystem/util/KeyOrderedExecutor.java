@@ -0,0 +1,86 @@
+package com.example.notificationsystem.util;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs tasks on a shared worker pool while keeping tasks with the same key strictly in submission order.
+ * <p>
+ * Each key has a queue, kept as the tail of a chain of futures. A task runs once the previous task for its
+ * key has finished, and tasks for different keys run in parallel. With {@link #submitAsync} a task has finished
+ * when the stage it returned completes, so asynchronous work (publish confirms, inbox writes) is ordered too.
+ * Keys without pending tasks hold no state.
+ * <p>
+ * At most maxPending tasks may be queued or running at once; beyond that the submitting thread blocks until one
+ * finishes, which holds back a Kafka consumer thread instead of letting the queues grow without bound.
+ */
+public class KeyOrderedExecutor {
+
+    private static final CompletableFuture<Void> IDLE = CompletableFuture.completedFuture(null);
+
+    private final ExecutorService workers;
+    private final Semaphore pending;
+    private final Map<Object, CompletableFuture<?>> tails = new ConcurrentHashMap<>();
+
+    public KeyOrderedExecutor(ExecutorService workers) {
+        this(workers, Integer.MAX_VALUE);
+    }
+
+    public KeyOrderedExecutor(ExecutorService workers, int maxPending) {
+        this.workers = workers;
+        this.pending = new Semaphore(maxPending);
+    }
+
+    public <T> CompletableFuture<T> submit(Object key, Supplier<T> task) {
+        return submitAsync(key, () -> CompletableFuture.completedFuture(task.get()));
+    }
+
+    // For tasks that finish asynchronously: the next task for the key starts only once the returned stage has
+    // completed, not as soon as the supplier returns it. Blocks while maxPending tasks are pending; throws
+    // RejectedExecutionException if interrupted meanwhile, the task is not submitted then.
+    public <T> CompletableFuture<T> submitAsync(Object key, Supplier<? extends CompletionStage<T>> task) {
+        try {
+            pending.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted waiting for a free slot", e);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.whenComplete((value, error) -> pending.release());
+        CompletableFuture<?> tail = tails.compute(key, (k, previous) ->
+                (previous == null ? IDLE : previous).handleAsync((ignored, previousError) -> {
+                    try {
+                        task.get().whenComplete((value, error) -> {
+                            if (error != null) {
+                                result.completeExceptionally(error);
+                            } else {
+                                result.complete(value);
+                            }
+                        });
+                    } catch (Throwable e) {
+                        result.completeExceptionally(e);
+                    }
+                    return null;
+                }, workers).thenCompose(started -> result.handle((value, error) -> null)));
+        // Forget the key once its last queued task is done
+        tail.whenComplete((ignored, error) -> tails.remove(key, tail));
+        return result;
+    }
+
+    // Keys with at least one queued or running task
+    public int activeKeys() {
+        return tails.size();
+    }
+
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        workers.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.notificationsystem.util;
+
+import com.example.notificationsystem.entity.NotificationDto;
+import com.example.notificationsystem.entity.NotificationPriority;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * AMQP converter with a compact binary encoding for {@link NotificationDto}, chosen per message by content type.
+ * <p>
+ * Incoming messages with {@link #CONTENT_TYPE} are decoded here without reflection; anything else (JSON from nodes
+ * still running the old codec) goes to the delegate. Outgoing notifications are written in binary only when
+ * {@code writeBinary} is set, so the codec can be switched on once every node can read it.
+ * <p>
+ * Layout: a version byte, then id, created_at and user_id as unsigned varints, then (since version 2) the priority
+ * ordinal as one byte, then the message as a varint length (0 for null, otherwise length + 1) followed by its UTF-8
+ * bytes. Both versions are read; version 1 bodies have no priority byte and get NORMAL, so an urgent notification
+ * written as version 1 is reported and timed as a normal one. Nodes that predate version 2 reject it, so
+ * {@code writeVersion} 1 is only meant for a rolling upgrade from such nodes.
+ */
+public class NotificationBinaryMessageConverter implements MessageConverter {
+
+    public static final String CONTENT_TYPE = "application/x-notification";
+
+    public static final byte VERSION_1 = 1;
+    public static final byte VERSION_2 = 2;
+
+    private static final NotificationPriority[] PRIORITIES = NotificationPriority.values();
+
+    private final MessageConverter delegate;
+    private final boolean writeBinary;
+    private final byte writeVersion;
+
+    public NotificationBinaryMessageConverter(MessageConverter delegate, boolean writeBinary, int writeVersion) {
+        if (writeVersion != VERSION_1 && writeVersion != VERSION_2) {
+            throw new IllegalArgumentException("Unsupported notification encoding version: " + writeVersion);
+        }
+        this.delegate = delegate;
+        this.writeBinary = writeBinary;
+        this.writeVersion = (byte) writeVersion;
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
+        // Digests carry nested items the binary layout has no room for, they stay JSON
+        if (!writeBinary || !(object instanceof NotificationDto notification) || notification.getDigestCount() > 0) {
+            return delegate.toMessage(object, messageProperties);
+        }
+        messageProperties.setContentType(CONTENT_TYPE);
+        byte[] body = encode(notification, writeVersion);
+        messageProperties.setContentLength(body.length);
+        return new Message(body, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        if (!CONTENT_TYPE.equals(message.getMessageProperties().getContentType())) {
+            return delegate.fromMessage(message);
+        }
+        return decode(message.getBody());
+    }
+
+    public static byte[] encode(NotificationDto notification) {
+        return encode(notification, VERSION_2);
+    }
+
+    public static byte[] encode(NotificationDto notification, byte version) {
+        byte[] text = notification.getMessage() == null
+                ? null
+                : notification.getMessage().getBytes(StandardCharsets.UTF_8);
+        int textLength = text == null ? 0 : text.length;
+        byte[] buffer = new byte[1 + 3 * 10 + 1 + 5 + textLength];
+        int position = 0;
+        buffer[position++] = version;
+        position = writeVarLong(buffer, position, notification.getId());
+        position = writeVarLong(buffer, position, notification.getCreatedAt());
+        position = writeVarLong(buffer, position, notification.getUserId());
+        if (version >= VERSION_2) {
+            buffer[position++] = (byte) notification.getPriority().ordinal();
+        }
+        position = writeVarLong(buffer, position, text == null ? 0 : textLength + 1L);
+        if (text != null) {
+            System.arraycopy(text, 0, buffer, position, textLength);
+            position += textLength;
+        }
+        return position == buffer.length ? buffer : Arrays.copyOf(buffer, position);
+    }
+
+    public static NotificationDto decode(byte[] body) {
+        if (body.length == 0 || (body[0] != VERSION_2 && body[0] != VERSION_1)) {
+            throw new MessageConversionException("Unsupported notification encoding version: "
+                    + (body.length == 0 ? "empty body" : body[0]));
+        }
+        try {
+            int[] position = {1};
+            NotificationDto notification = new NotificationDto();
+            notification.setId(readVarLong(body, position));
+            notification.setCreatedAt(readVarLong(body, position));
+            notification.setUserId(readVarLong(body, position));
+            if (body[0] >= VERSION_2) {
+                int priority = body[position[0]++];
+                if (priority < 0 || priority >= PRIORITIES.length) {
+                    throw new MessageConversionException("Unknown notification priority: " + priority);
+                }
+                notification.setPriority(PRIORITIES[priority]);
+            }
+            long textLength = readVarLong(body, position);
+            if (textLength > 0) {
+                int length = Math.toIntExact(textLength - 1);
+                notification.setMessage(new String(body, position[0], length, StandardCharsets.UTF_8));
+            }
+            return notification;
+        } catch (ArrayIndexOutOfBoundsException | StringIndexOutOfBoundsException | ArithmeticException e) {
+            throw new MessageConversionException("Truncated notification body", e);
+        }
+    }
+
+    // Unsigned LEB128; ids and timestamps are never negative, but negative values still round-trip in 10 bytes
+    private static int writeVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static long readVarLong(byte[] buffer, int[] position) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new MessageConversionException("Malformed varint in notification body");
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.notificationsystem.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * A fixed array of token buckets addressed by key hash, updated lock-free with CAS and without allocating.
+ * <p>
+ * Keys hashing to the same stripe share a bucket, so with enough stripes a heavy key only rarely slows a light one.
+ * Each bucket is one long: the last refill time in milliseconds since creation (upper 40 bits) and the available
+ * tokens in thousandths (lower 24 bits), which caps the burst size at 16777 tokens.
+ */
+public class StripedTokenBuckets {
+
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long SCALE = 1000;
+
+    private final AtomicLongArray buckets;
+    private final int mask;
+    private final long ratePerSecond;
+    private final long capacity;
+    private final LongSupplier clock;
+    private final long epochMillis;
+
+    public StripedTokenBuckets(int stripes, long ratePerSecond, long burst) {
+        this(stripes, ratePerSecond, burst, System::currentTimeMillis);
+    }
+
+    // Takes the millisecond clock so that tests can step the refill time
+    StripedTokenBuckets(int stripes, long ratePerSecond, long burst, LongSupplier clock) {
+        if (Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("stripes must be a power of two: " + stripes);
+        }
+        if (burst < 1 || burst * SCALE > TOKEN_MASK) {
+            throw new IllegalArgumentException("burst must be between 1 and " + TOKEN_MASK / SCALE + ": " + burst);
+        }
+        this.buckets = new AtomicLongArray(stripes);
+        this.mask = stripes - 1;
+        this.ratePerSecond = ratePerSecond;
+        this.capacity = burst * SCALE;
+        this.clock = clock;
+        this.epochMillis = clock.getAsLong();
+        for (int i = 0; i < stripes; i++) {
+            buckets.set(i, capacity);
+        }
+    }
+
+    public boolean tryAcquire(long key) {
+        int stripe = (int) (mix(key) & mask);
+        long now = clock.getAsLong() - epochMillis;
+        while (true) {
+            long state = buckets.get(stripe);
+            long last = state >>> TOKEN_BITS;
+            long tokens = state & TOKEN_MASK;
+            long elapsed = Math.max(0, now - last);
+            // One token per 1000/ratePerSecond ms; tokens are kept in thousandths, so the refill is exact
+            long refilled = Math.min(capacity, tokens + elapsed * ratePerSecond);
+            // A capped refill still moves the time forward, or the idle time of a full bucket would be counted again
+            long refillTime = refilled == tokens && tokens < capacity ? last : now;
+            if (refilled < SCALE) {
+                // Empty; only store the refill so that later calls do not count the same time twice
+                if (refilled == tokens || buckets.compareAndSet(stripe, state, pack(refillTime, refilled))) {
+                    return false;
+                }
+                continue;
+            }
+            if (buckets.compareAndSet(stripe, state, pack(refillTime, refilled - SCALE))) {
+                return true;
+            }
+        }
+    }
+
+    private static long pack(long time, long tokens) {
+        return (time << TOKEN_BITS) | tokens;
+    }
+
+    // Murmur3 finalizer, spreads sequential ids over the stripes
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
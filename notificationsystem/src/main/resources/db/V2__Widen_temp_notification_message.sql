@@ -0,0 +1,2 @@
+-- The offline inbox stores notifications.message, which is TEXT; ddl-auto=update does not widen existing columns
+ALTER TABLE temp_notification ALTER COLUMN message TYPE TEXT;
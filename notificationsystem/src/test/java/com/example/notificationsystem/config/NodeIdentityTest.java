@@ -0,0 +1,25 @@
+package com.example.notificationsystem.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NodeIdentityTest {
+
+    @Test
+    void usesTheConfiguredId() {
+        NodeIdentity nodeIdentity = new NodeIdentity("node-7");
+
+        assertThat(nodeIdentity.getId()).isEqualTo("node-7");
+        assertThat(nodeIdentity.getQueueName()).isEqualTo("notificationQueue.node-7");
+    }
+
+    @Test
+    void keepsTheSameIdAcrossRestartsWhenUnset() throws Exception {
+        assertThat(new NodeIdentity("").getId())
+                .isEqualTo(new NodeIdentity(" ").getId())
+                .isEqualTo(InetAddress.getLocalHost().getHostName());
+    }
+}
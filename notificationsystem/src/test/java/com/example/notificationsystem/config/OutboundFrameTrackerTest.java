@@ -0,0 +1,87 @@
+package com.example.notificationsystem.config;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboundFrameTrackerTest {
+
+    private final OutboundFrameTracker tracker = new OutboundFrameTracker();
+    private final WebSocketHandler handler = mock(WebSocketHandler.class);
+    private final WebSocketHandler decorated = tracker.decorate(handler);
+    private final WebSocketSession session = mock(WebSocketSession.class);
+
+    OutboundFrameTrackerTest() {
+        when(session.getId()).thenReturn("s1");
+    }
+
+    @Test
+    void countsQueuedAndWrittenMessageFrames() throws Exception {
+        WebSocketSession counting = connect();
+
+        send(SimpMessageType.MESSAGE, "s1");
+        send(SimpMessageType.MESSAGE, "s1");
+        send(SimpMessageType.HEARTBEAT, "s1");
+        long queued = tracker.queued("s1");
+        counting.sendMessage(new TextMessage("MESSAGE\ndestination:/user/queue/notifications\n\nfirst\0"));
+
+        assertThat(queued).isEqualTo(2);
+        assertThat(tracker.pending("s1")).isEqualTo(1);
+        assertThat(tracker.isWritten("s1", queued)).isFalse();
+
+        counting.sendMessage(new TextMessage("\n"));
+        counting.sendMessage(new TextMessage("MESSAGE\ndestination:/user/queue/notifications\n\nsecond\0"));
+
+        assertThat(tracker.pending("s1")).isZero();
+        assertThat(tracker.isWritten("s1", queued)).isTrue();
+        verify(session, times(3)).sendMessage(any());
+    }
+
+    @Test
+    void forgetsClosedSessions() throws Exception {
+        connect();
+        send(SimpMessageType.MESSAGE, "s1");
+
+        decorated.afterConnectionClosed(session, CloseStatus.NORMAL);
+
+        assertThat(tracker.queued("s1")).isZero();
+        assertThat(tracker.pending("s1")).isZero();
+        assertThat(tracker.isWritten("s1", 0)).isFalse();
+    }
+
+    @Test
+    void ignoresFramesOfUnknownSessions() {
+        send(SimpMessageType.MESSAGE, "s2");
+
+        assertThat(tracker.queued("s2")).isZero();
+    }
+
+    private WebSocketSession connect() throws Exception {
+        decorated.afterConnectionEstablished(session);
+        ArgumentCaptor<WebSocketSession> counting = ArgumentCaptor.forClass(WebSocketSession.class);
+        verify(handler).afterConnectionEstablished(counting.capture());
+        return counting.getValue();
+    }
+
+    private void send(SimpMessageType type, String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        tracker.preSend(message, mock(MessageChannel.class));
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.notificationsystem.consumer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.SendResult;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NotificationDeadLetterPublisherTest {
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, String> kafkaTemplate = mock(KafkaTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final NotificationDeadLetterPublisher publisher =
+            new NotificationDeadLetterPublisher(kafkaTemplate, meterRegistry);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sendsTheRecordToTheDeadLetterTopicWithItsOrigin() {
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.completedFuture(mock(SendResult.class)));
+        ConsumerRecord<String, String> record = new ConsumerRecord<>("notifications", 3, 42, "7", "payload");
+
+        CompletableFuture<Void> sent = publisher.publishAll(List.of(record),
+                new CompletionException(new IllegalStateException("inbox down")));
+
+        ArgumentCaptor<ProducerRecord<String, String>> deadLetter = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate).send(deadLetter.capture());
+        assertThat(sent).isCompleted();
+        assertThat(deadLetter.getValue().topic()).isEqualTo("notifications.DLT");
+        assertThat(deadLetter.getValue().partition()).isNull();
+        assertThat(deadLetter.getValue().key()).isEqualTo("7");
+        assertThat(deadLetter.getValue().value()).isEqualTo("payload");
+        assertThat(header(deadLetter.getValue(), KafkaHeaders.DLT_ORIGINAL_TOPIC)).asString(StandardCharsets.UTF_8)
+                .isEqualTo("notifications");
+        assertThat(ByteBuffer.wrap(header(deadLetter.getValue(), KafkaHeaders.DLT_ORIGINAL_PARTITION)).getInt())
+                .isEqualTo(3);
+        assertThat(ByteBuffer.wrap(header(deadLetter.getValue(), KafkaHeaders.DLT_ORIGINAL_OFFSET)).getLong())
+                .isEqualTo(42);
+        assertThat(header(deadLetter.getValue(), KafkaHeaders.DLT_EXCEPTION_MESSAGE))
+                .asString(StandardCharsets.UTF_8).isEqualTo("inbox down");
+        assertThat(meterRegistry.counter("notifications.consume.dead-lettered").count()).isEqualTo(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failsWhenTheSendFails() {
+        when(kafkaTemplate.send(any(ProducerRecord.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("kafka down")));
+
+        CompletableFuture<Void> sent = publisher.publish(
+                new ConsumerRecord<>("notifications", 0, 1, null, "payload"), new IllegalStateException());
+
+        assertThat(sent).isCompletedExceptionally();
+        assertThat(meterRegistry.counter("notifications.consume.dead-lettered").count()).isZero();
+    }
+
+    private static byte[] header(ProducerRecord<String, String> record, String name) {
+        return record.headers().lastHeader(name).value();
+    }
+}
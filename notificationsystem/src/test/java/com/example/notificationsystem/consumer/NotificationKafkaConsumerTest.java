@@ -0,0 +1,146 @@
+package com.example.notificationsystem.consumer;
+
+import com.example.notificationsystem.service.NotificationDeduplicator;
+import com.example.notificationsystem.service.NotificationDigester;
+import com.example.notificationsystem.service.NotificationService;
+import com.example.notificationsystem.util.KafkaMessageConverter;
+import com.example.notificationsystem.util.KeyOrderedExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NotificationKafkaConsumerTest {
+
+    private static final String EVENT = "{\"before\":null,\"after\":{\"id\":11,\"user_id\":7,\"message\":\"Hi\","
+            + "\"source\":\"reports\",\"priority\":\"NORMAL\",\"created_at\":1718000000000},\"op\":\"c\"}";
+
+    private final NotificationDeduplicator deduplicator = mock(NotificationDeduplicator.class);
+    private final NotificationDigester digester = mock(NotificationDigester.class);
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private final NotificationDeadLetterPublisher deadLetterPublisher = mock(NotificationDeadLetterPublisher.class);
+    private final KeyOrderedExecutor keyedExecutor = new KeyOrderedExecutor(Executors.newFixedThreadPool(2), 10);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Acknowledgment acknowledgment = mock(Acknowledgment.class);
+    private final NotificationKafkaConsumer consumer = new NotificationKafkaConsumer();
+
+    private final ConsumerRecord<String, String> record =
+            new ConsumerRecord<>(NotificationKafkaConsumer.NOTIFICATIONS_TOPIC, 0, 42, null, EVENT);
+
+    NotificationKafkaConsumerTest() {
+        ReflectionTestUtils.setField(consumer, "notificationDeduplicator", deduplicator);
+        ReflectionTestUtils.setField(consumer, "notificationDigester", digester);
+        ReflectionTestUtils.setField(consumer, "notificationService", notificationService);
+        ReflectionTestUtils.setField(consumer, "deadLetterPublisher", deadLetterPublisher);
+        ReflectionTestUtils.setField(consumer, "notificationKeyedExecutor", keyedExecutor);
+        ReflectionTestUtils.setField(consumer, "kafkaMessageConverter", new KafkaMessageConverter());
+        ReflectionTestUtils.setField(consumer, "meterRegistry", meterRegistry);
+        when(deduplicator.tryClaim(anyLong())).thenReturn(true);
+    }
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        keyedExecutor.shutdown();
+    }
+
+    @Test
+    void acknowledgesAKeyedRecordOnceItIsRouted() throws Exception {
+        when(digester.submit(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        consumer.consumeKeyed(record, acknowledgment);
+
+        verify(acknowledgment, timeout(5000)).acknowledge();
+        verify(deduplicator).markProcessed(11);
+        verify(deadLetterPublisher, never()).publishAll(any(), any());
+    }
+
+    @Test
+    void deadLettersAFailedKeyedRecordBeforeAcknowledgingIt() throws Exception {
+        IllegalStateException failure = new IllegalStateException("inbox down");
+        when(digester.submit(any(), any())).thenReturn(CompletableFuture.failedFuture(failure));
+        when(deadLetterPublisher.publishAll(eq(List.of(record)), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        consumer.consumeKeyed(record, acknowledgment);
+
+        verify(acknowledgment, timeout(5000)).acknowledge();
+        InOrder order = inOrder(deadLetterPublisher, acknowledgment);
+        order.verify(deadLetterPublisher).publishAll(eq(List.of(record)), any());
+        order.verify(acknowledgment).acknowledge();
+        verify(deduplicator).release(11);
+        assertThat(meterRegistry.counter("notifications.consume.failed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void leavesAKeyedRecordUnacknowledgedWhenTheDeadLetterFails() throws Exception {
+        when(digester.submit(any(), any())).thenReturn(CompletableFuture.failedFuture(new IllegalStateException()));
+        when(deadLetterPublisher.publishAll(eq(List.of(record)), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("kafka down")));
+
+        consumer.consumeKeyed(record, acknowledgment);
+
+        verify(deadLetterPublisher, timeout(5000)).publishAll(eq(List.of(record)), any());
+        verify(acknowledgment, after(200).never()).acknowledge();
+    }
+
+    @Test
+    void deadLettersAFailedRecordBeforeAcknowledgingIt() throws Exception {
+        when(digester.submit(any(), any())).thenReturn(CompletableFuture.failedFuture(new IllegalStateException()));
+        when(deadLetterPublisher.publishAll(eq(List.of(record)), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        consumer.consume(record, acknowledgment);
+
+        InOrder order = inOrder(deadLetterPublisher, acknowledgment);
+        order.verify(deadLetterPublisher).publishAll(eq(List.of(record)), any());
+        order.verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void deadLettersTheClaimedRecordsOfAFailedBatch() throws Exception {
+        ConsumerRecord<String, String> tombstone =
+                new ConsumerRecord<>(NotificationKafkaConsumer.NOTIFICATIONS_TOPIC, 0, 43, null, null);
+        when(notificationService.dispatchBatch(any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("rabbit down")));
+        CompletableFuture<Void> deadLettered = new CompletableFuture<>();
+        when(deadLetterPublisher.publishAll(eq(List.of(record)), any())).thenReturn(deadLettered);
+
+        consumer.consumeBatch(List.of(record, tombstone), acknowledgment);
+
+        verify(deduplicator).release(11);
+        verify(acknowledgment, never()).acknowledge();
+        deadLettered.complete(null);
+        verify(acknowledgment).acknowledge();
+        assertThat(meterRegistry.counter("notifications.consume.failed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void acknowledgesABatchOnceItIsDispatched() throws Exception {
+        when(notificationService.dispatchBatch(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        consumer.consumeBatch(List.of(record), acknowledgment);
+
+        verify(acknowledgment).acknowledge();
+        verify(deduplicator).markProcessed(11);
+        verify(deadLetterPublisher, never()).publishAll(any(), any());
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.notificationsystem.repository;
+
+import com.example.notificationsystem.entity.TempNotification;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class TempNotificationBatchRepositoryImplTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TempNotificationBatchRepositoryImpl repository = new TempNotificationBatchRepositoryImpl(jdbcTemplate);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void drainsOnePageInOneStatementInIdOrder() {
+        when(jdbcTemplate.query(contains("RETURNING"), any(RowMapper.class), eq("alice"), eq(4L), eq(3)))
+                .thenReturn(new ArrayList<>(List.of(row(9), row(5), row(7))));
+
+        List<TempNotification> page = repository.drainPage("alice", 4, 3);
+
+        assertThat(page).extracting(TempNotification::getId).containsExactly(5L, 7L, 9L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void skipsRowsAnotherDrainHasLocked() {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(), any(), any()))
+                .thenReturn(new ArrayList<>());
+
+        repository.drainPage("alice", 0, 3);
+
+        verify(jdbcTemplate).query(contains("FOR UPDATE SKIP LOCKED"), any(RowMapper.class), eq("alice"), eq(0L),
+                eq(3));
+    }
+
+    @Test
+    void insertsNothingForAnEmptyBatch() {
+        repository.insertAll(List.of());
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void insertsABatchWithOneStatement() {
+        repository.insertAll(List.of(row(0), row(0)));
+
+        verify(jdbcTemplate).batchUpdate(contains("INSERT INTO temp_notification"), anyList(), anyInt(), any());
+    }
+
+    private static TempNotification row(long id) {
+        TempNotification tempNotification = new TempNotification();
+        tempNotification.setId(id);
+        tempNotification.setUserId(7L);
+        tempNotification.setUsername("alice");
+        tempNotification.setMessage("Hi");
+        return tempNotification;
+    }
+}
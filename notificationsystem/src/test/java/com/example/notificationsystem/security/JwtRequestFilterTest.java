@@ -0,0 +1,95 @@
+package com.example.notificationsystem.security;
+
+import com.example.notificationsystem.service.CustomUserDetailsService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JwtRequestFilterTest {
+
+    private final JwtUtil jwtUtil = spy(new JwtUtil(new SimpleMeterRegistry(), 100));
+    private final CustomUserDetailsService userDetailsService = mock(CustomUserDetailsService.class);
+    private final JwtRequestFilter filter = new JwtRequestFilter();
+
+    JwtRequestFilterTest() {
+        ReflectionTestUtils.setField(filter, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(filter, "userDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(filter, "tokenDenylist", mock(TokenDenylist.class));
+        when(userDetailsService.loadUserByUsername("alice"))
+                .thenReturn(new User("alice", "", List.of(new SimpleGrantedAuthority("ROLE_DB"))));
+        doReturn(true).when(jwtUtil).validateToken(anyString(), any());
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void loadsTheUserByDefault() throws Exception {
+        ReflectionTestUtils.setField(filter, "authMode", "database");
+        token(claims(List.of("ROLE_TOKEN")));
+
+        assertThat(authorities()).containsExactly("ROLE_DB");
+    }
+
+    @Test
+    void trustsTheRolesClaimInStatelessMode() throws Exception {
+        ReflectionTestUtils.setField(filter, "authMode", "stateless");
+        token(claims(List.of("ROLE_TOKEN")));
+
+        assertThat(authorities()).containsExactly("ROLE_TOKEN");
+        verify(userDetailsService, never()).loadUserByUsername(anyString());
+    }
+
+    @Test
+    void loadsTheUserForATokenWithoutRolesInStatelessMode() throws Exception {
+        ReflectionTestUtils.setField(filter, "authMode", "stateless");
+        token(claims(null));
+
+        assertThat(authorities()).containsExactly("ROLE_DB");
+    }
+
+    private static Claims claims(List<String> roles) {
+        Claims claims = Jwts.claims().setSubject("alice").setId("jti-1");
+        if (roles != null) {
+            claims.put(JwtUtil.ROLES_CLAIM, roles);
+        }
+        return claims;
+    }
+
+    private void token(Claims claims) {
+        doReturn(claims).when(jwtUtil).extractAllClaims("token");
+    }
+
+    private List<String> authorities() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer token");
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertThat(authentication).isNotNull();
+        return authentication.getAuthorities().stream().map(Object::toString).toList();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.notificationsystem.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtUtilTest {
+
+    private final JwtUtil jwtUtil = new JwtUtil(new SimpleMeterRegistry(), 100);
+    private final UserDetails alice = User.withUsername("alice")
+            .password("")
+            .authorities("ROLE_USER")
+            .build();
+
+    @Test
+    void changesToReturnedClaimsDoNotReachTheCache() {
+        String token = jwtUtil.generateToken(alice);
+        jwtUtil.extractAllClaims(token);
+
+        Claims first = jwtUtil.extractAllClaims(token);
+        first.setSubject("mallory");
+        first.put(JwtUtil.ROLES_CLAIM, List.of("ROLE_ADMIN"));
+
+        Claims second = jwtUtil.extractAllClaims(token);
+        assertThat(second.getSubject()).isEqualTo("alice");
+        assertThat(jwtUtil.extractAuthorities(second)).extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_USER");
+        assertThat(jwtUtil.validateToken(token, alice)).isTrue();
+    }
+
+    @Test
+    void cachedRolesCannotBeModified() {
+        String token = jwtUtil.generateToken(alice);
+        jwtUtil.extractAllClaims(token);
+
+        @SuppressWarnings("unchecked")
+        List<Object> roles = (List<Object>) jwtUtil.extractAllClaims(token).get(JwtUtil.ROLES_CLAIM);
+
+        assertThatThrownBy(() -> roles.add("ROLE_ADMIN")).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(jwtUtil.hasAuthorities(jwtUtil.extractAllClaims(token))).isTrue();
+    }
+
+    @Test
+    void rejectsATokenSignedWithAnotherKey() {
+        String token = new JwtUtil(new SimpleMeterRegistry(), 100).generateToken(alice);
+
+        assertThatThrownBy(() -> jwtUtil.extractAllClaims(token)).isInstanceOf(SignatureException.class);
+    }
+}
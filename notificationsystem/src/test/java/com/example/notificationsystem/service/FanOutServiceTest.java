@@ -0,0 +1,147 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.entity.BroadcastNotificationDto;
+import com.example.notificationsystem.entity.NotificationTarget;
+import com.example.notificationsystem.entity.TempNotification;
+import com.example.notificationsystem.repository.UserRepository;
+import com.example.notificationsystem.repository.UserRepository.UsernameView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FanOutServiceTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final PresenceService presenceService = mock(PresenceService.class);
+    private final OfflineInboxStore offlineInboxStore = mock(OfflineInboxStore.class);
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final LocalNotificationDelivery localDelivery = mock(LocalNotificationDelivery.class);
+    private final FanOutService fanOutService = new FanOutService(userRepository, presenceService, offlineInboxStore,
+            messagingTemplate, localDelivery, new SimpleMeterRegistry(), 2, 2, 1);
+
+    FanOutServiceTest() {
+        when(userRepository.findUsernamesByGroupAfter("ops", 0, PageRequest.of(0, 2)))
+                .thenReturn(List.of(user(1, "alice"), user(2, "bob")));
+        when(userRepository.findUsernamesByGroupAfter("ops", 2, PageRequest.of(0, 2)))
+                .thenReturn(List.of(user(3, "carol")));
+        when(presenceService.areOnline(List.of("alice", "bob"))).thenReturn(Map.of("alice", true, "bob", false));
+        when(presenceService.areOnline(List.of("carol"))).thenReturn(Map.of());
+        when(offlineInboxStore.appendAll(anyList())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    void sendsOneTopicMessageAndStoresTheOfflineRecipientsPageByPage() {
+        BroadcastNotificationDto broadcast = broadcast(NotificationTarget.GROUP, "ops");
+
+        assertThat(fanOutService.fanOut(broadcast)).isCompleted();
+
+        verify(messagingTemplate).convertAndSend("/topic/notifications.group.ops", broadcast);
+        assertThat(stored(2)).containsExactly(List.of("bob"), List.of("carol"));
+    }
+
+    @Test
+    void retriesAFailedPageOnly() throws Exception {
+        when(offlineInboxStore.appendAll(anyList()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("inbox down")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        fanOutService.fanOut(broadcast(NotificationTarget.GROUP, "ops")).get(5, TimeUnit.SECONDS);
+
+        assertThat(stored(3)).containsExactlyInAnyOrder(List.of("bob"), List.of("carol"), List.of("bob"));
+    }
+
+    @Test
+    void failsOnceAPageRunsOutOfRetries() {
+        when(offlineInboxStore.appendAll(anyList()))
+                .thenReturn(CompletableFuture.completedFuture(null))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("inbox down")));
+
+        CompletableFuture<Void> fannedOut = fanOutService.fanOut(broadcast(NotificationTarget.GROUP, "ops"));
+
+        assertThatThrownBy(() -> fannedOut.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("inbox down");
+        // The first page and three attempts for the second
+        verify(offlineInboxStore, times(4)).appendAll(anyList());
+    }
+
+    @Test
+    void dropsBroadcastsWithoutATarget() {
+        assertThat(fanOutService.fanOut(broadcast(null, "ops"))).isCompleted();
+        assertThat(fanOutService.fanOut(broadcast(NotificationTarget.ROLE, null))).isCompleted();
+
+        verify(messagingTemplate, never()).convertAndSend(any(String.class), any(Object.class));
+    }
+
+    @Test
+    void storesTheBroadcastForConnectedRecipientsWithoutATopicSubscription() {
+        when(localDelivery.usersNotSubscribedTo("/topic/notifications.role.ADMIN"))
+                .thenReturn(List.of("alice", "bob", "dave"));
+        when(userRepository.findUsernamesByRoleAndUsernameIn("ADMIN", List.of("alice", "bob")))
+                .thenReturn(List.of(user(1, "alice")));
+        when(userRepository.findUsernamesByRoleAndUsernameIn("ADMIN", List.of("dave")))
+                .thenReturn(List.of());
+
+        assertThat(fanOutService.storeForUnsubscribed(broadcast(NotificationTarget.ROLE, "ADMIN"))).isCompleted();
+
+        assertThat(stored(1)).containsExactly(List.of("alice"));
+        verify(messagingTemplate, never()).convertAndSend(any(String.class), any(Object.class));
+    }
+
+    @Test
+    void storesNothingWhenEveryConnectedUserIsSubscribed() {
+        when(localDelivery.usersNotSubscribedTo(eq("/topic/notifications.all"))).thenReturn(List.of());
+
+        assertThat(fanOutService.storeForUnsubscribed(broadcast(NotificationTarget.ALL, null))).isCompleted();
+
+        verify(offlineInboxStore, never()).appendAll(anyList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<String>> stored(int writes) {
+        ArgumentCaptor<List<TempNotification>> pages = ArgumentCaptor.forClass(List.class);
+        verify(offlineInboxStore, times(writes)).appendAll(pages.capture());
+        return pages.getAllValues().stream()
+                .map(page -> page.stream().map(TempNotification::getUsername).toList())
+                .toList();
+    }
+
+    private static BroadcastNotificationDto broadcast(NotificationTarget targetType, String target) {
+        BroadcastNotificationDto broadcast = new BroadcastNotificationDto();
+        broadcast.setId(9);
+        broadcast.setMessage("Maintenance");
+        broadcast.setTargetType(targetType);
+        broadcast.setTarget(target);
+        return broadcast;
+    }
+
+    private static UsernameView user(long id, String username) {
+        return new UsernameView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getUsername() {
+                return username;
+            }
+        };
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.config.OutboundFrameTracker;
+import com.example.notificationsystem.dto.response.NotificationPageResponse;
+import com.example.notificationsystem.entity.NotificationDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InboxReplayServiceTest {
+
+    private final OfflineInboxStore store = mock(OfflineInboxStore.class);
+    private final LocalNotificationDelivery localDelivery = mock(LocalNotificationDelivery.class);
+    private final OutboundFrameTracker tracker = mock(OutboundFrameTracker.class);
+    private final InboxReplayService replayService = new InboxReplayService(store, localDelivery,
+            mock(NotificationCoalescer.class), tracker, true, 2, 1, 2, 100, false);
+
+    private final AtomicBoolean open = new AtomicBoolean(true);
+    private final AtomicBoolean written = new AtomicBoolean(true);
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    InboxReplayServiceTest() {
+        when(store.flushed("alice")).thenReturn(CompletableFuture.completedFuture(null));
+        when(store.read("alice", "", 2)).thenReturn(page(true, "2", "first", "second"));
+        when(store.read("alice", "2", 2)).thenReturn(page(false, "3", "third"));
+        when(localDelivery.hasSession("alice", "s1")).thenAnswer(invocation -> open.get());
+        doAnswer(invocation -> queued.incrementAndGet())
+                .when(localDelivery).deliverToSession(eq("s1"), eq("sub-1"), any());
+        doAnswer(invocation -> events.add("ack " + invocation.getArgument(1)))
+                .when(store).acknowledge(eq("alice"), anyString());
+        when(tracker.pending("s1")).thenAnswer(invocation -> pending.get());
+        when(tracker.queued("s1")).thenAnswer(invocation -> open.get() ? queued.get() : 0);
+        when(tracker.isWritten(eq("s1"), anyLong())).thenAnswer(invocation -> open.get() && written.get());
+    }
+
+    @AfterEach
+    void shutdown() {
+        replayService.shutdown();
+    }
+
+    @Test
+    void acknowledgesEachChunkOnceItIsWritten() {
+        replayService.onSubscribe("alice", "s1", "sub-1");
+
+        verify(store, timeout(5000)).acknowledge("alice", "3");
+        InOrder order = inOrder(store, localDelivery);
+        order.verify(store).read("alice", "", 2);
+        order.verify(localDelivery).deliverToSession(eq("s1"), eq("sub-1"), message("second"));
+        order.verify(store).acknowledge("alice", "2");
+        order.verify(store).read("alice", "2", 2);
+        order.verify(localDelivery).deliverToSession(eq("s1"), eq("sub-1"), message("third"));
+        order.verify(store).acknowledge("alice", "3");
+    }
+
+    @Test
+    void keepsTheChunkInTheInboxWhenTheSessionClosesBeforeItIsWritten() {
+        written.set(false);
+
+        replayService.onSubscribe("alice", "s1", "sub-1");
+        verify(localDelivery, timeout(5000)).deliverToSession(eq("s1"), eq("sub-1"), message("second"));
+        open.set(false);
+
+        verify(store, after(200).never()).acknowledge(anyString(), anyString());
+        assertThat(replayService.deferIfReplaying("alice", () -> { })).isFalse();
+    }
+
+    @Test
+    void sendsNothingWhileTheSessionsSendBufferIsFull() {
+        pending.set(150);
+
+        replayService.onSubscribe("alice", "s1", "sub-1");
+
+        verify(store, after(200).never()).read(anyString(), anyString(), eq(2));
+        pending.set(0);
+        verify(store, timeout(5000)).acknowledge("alice", "3");
+    }
+
+    @Test
+    void sendsHeldLiveDeliveriesAfterTheBacklog() throws InterruptedException {
+        written.set(false);
+        CountDownLatch delivered = new CountDownLatch(1);
+
+        replayService.onSubscribe("alice", "s1", "sub-1");
+        verify(localDelivery, timeout(5000)).deliverToSession(eq("s1"), eq("sub-1"), message("second"));
+        assertThat(replayService.deferIfReplaying("alice", () -> {
+            events.add("live");
+            delivered.countDown();
+        })).isTrue();
+        written.set(true);
+
+        assertThat(delivered.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(events).containsExactly("ack 2", "ack 3", "live");
+        assertThat(replayService.deferIfReplaying("alice", () -> { })).isFalse();
+        verify(store, never()).drain(anyString(), anyString(), eq(2));
+    }
+
+    private static NotificationPageResponse page(boolean hasMore, String nextCursor, String... messages) {
+        return new NotificationPageResponse(List.of(messages).stream().map(InboxReplayServiceTest::notification)
+                .toList(), nextCursor, hasMore);
+    }
+
+    private static Object message(String message) {
+        return argThat(payload -> payload instanceof NotificationDto notification
+                && message.equals(notification.getMessage()));
+    }
+
+    private static NotificationDto notification(String message) {
+        NotificationDto notification = new NotificationDto();
+        notification.setUserId(7);
+        notification.setMessage(message);
+        return notification;
+    }
+}
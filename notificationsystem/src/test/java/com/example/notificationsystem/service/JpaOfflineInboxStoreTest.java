@@ -0,0 +1,92 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.dto.response.NotificationPageResponse;
+import com.example.notificationsystem.entity.NotificationDto;
+import com.example.notificationsystem.entity.TempNotification;
+import com.example.notificationsystem.exception.InvalidCursorException;
+import com.example.notificationsystem.repository.TempNotificationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JpaOfflineInboxStoreTest {
+
+    private final TempNotificationRepository repository = mock(TempNotificationRepository.class);
+    private final JpaOfflineInboxStore store = new JpaOfflineInboxStore(mock(OfflineInboxWriter.class), repository);
+
+    @Test
+    void drainsAFullPageAndPointsTheCursorAtItsLastRow() {
+        when(repository.drainPage("alice", 0, 2)).thenReturn(List.of(row(4, "first"), row(9, "second")));
+
+        NotificationPageResponse page = store.drain("alice", null, 2);
+
+        assertThat(page.getNotifications()).extracting(NotificationDto::getMessage)
+                .containsExactly("first", "second");
+        assertThat(page.getNextCursor()).isEqualTo("9");
+        assertThat(page.isHasMore()).isTrue();
+    }
+
+    @Test
+    void continuesAfterTheCursorAndStopsOnAShortPage() {
+        when(repository.drainPage("alice", 9, 2)).thenReturn(List.of(row(12, "third")));
+
+        NotificationPageResponse page = store.drain("alice", "9", 2);
+
+        assertThat(page.getNextCursor()).isEqualTo("12");
+        assertThat(page.isHasMore()).isFalse();
+    }
+
+    @Test
+    void keepsTheCursorOfAnEmptyInbox() {
+        when(repository.drainPage("alice", 12, 2)).thenReturn(List.of());
+
+        NotificationPageResponse page = store.drain("alice", "12", 2);
+
+        assertThat(page.getNotifications()).isEmpty();
+        assertThat(page.getNextCursor()).isEqualTo("12");
+        assertThat(page.isHasMore()).isFalse();
+    }
+
+    @Test
+    void rejectsCursorsItDidNotIssue() {
+        assertThatThrownBy(() -> store.drain("alice", "abc", 2)).isInstanceOf(InvalidCursorException.class);
+        assertThatThrownBy(() -> store.drain("alice", "-1", 2)).isInstanceOf(InvalidCursorException.class);
+        verify(repository, never()).drainPage(anyString(), anyLong(), anyInt());
+    }
+
+    @Test
+    void passesDatabaseFailuresToTheCaller() {
+        when(repository.drainPage("alice", 0, 2)).thenThrow(new DataAccessResourceFailureException("db down"));
+
+        assertThatThrownBy(() -> store.drain("alice", "", 2)).isInstanceOf(DataAccessResourceFailureException.class);
+    }
+
+    @Test
+    void acknowledgesUpToTheGivenRow() {
+        store.acknowledge("alice", "9");
+        store.acknowledge("bob", "");
+
+        verify(repository).deleteUpTo("alice", 9);
+        verify(repository, never()).deleteUpTo("bob", 0);
+    }
+
+    private static TempNotification row(long id, String message) {
+        TempNotification tempNotification = new TempNotification();
+        tempNotification.setId(id);
+        tempNotification.setUserId(7L);
+        tempNotification.setUsername("alice");
+        tempNotification.setMessage(message);
+        return tempNotification;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.entity.NotificationDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NotificationCoalescerTest {
+
+    private final List<String> frames = Collections.synchronizedList(new ArrayList<>());
+    private final NotificationCoalescer.FrameSender sender = (username, payload, headers) ->
+            frames.add(username + " " + describe(payload, headers));
+
+    private NotificationCoalescer coalescer = new NotificationCoalescer(true, 50, 3, false);
+
+    @AfterEach
+    void shutdown() {
+        coalescer.flushAll();
+    }
+
+    @Test
+    void sendsEveryNotificationAtOnceWhenDisabled() {
+        coalescer = new NotificationCoalescer(false, 50, 3, false);
+
+        coalescer.submit("alice", notification("a"), sender);
+        coalescer.submit("alice", notification("b"), sender);
+
+        assertThat(frames).containsExactly("alice a", "alice b");
+    }
+
+    @Test
+    void sendsALoneNotificationAsAPlainFrameOnceTheWindowCloses() throws InterruptedException {
+        coalescer.submit("alice", notification("a"), sender);
+        assertThat(frames).isEmpty();
+
+        awaitFrames(1);
+        assertThat(frames).containsExactly("alice a");
+    }
+
+    @Test
+    void sendsABurstAsOneBatchedFrame() throws InterruptedException {
+        coalescer.submit("alice", notification("a"), sender);
+        coalescer.submit("alice", notification("b"), sender);
+        coalescer.submit("bob", notification("c"), sender);
+
+        awaitFrames(2);
+        assertThat(frames).containsExactlyInAnyOrder("alice [a, b] batched 2", "bob c");
+    }
+
+    @Test
+    void sendsAFullBatchWithoutWaitingForTheWindow() {
+        coalescer.submit("alice", notification("a"), sender);
+        coalescer.submit("alice", notification("b"), sender);
+        coalescer.submit("alice", notification("c"), sender);
+
+        assertThat(frames).containsExactly("alice [a, b, c] batched 3");
+    }
+
+    @Test
+    void sendsWhatIsBufferedBeforeSwitchingSenders() {
+        List<String> other = new ArrayList<>();
+        coalescer.submit("alice", notification("a"), sender);
+        coalescer.submit("alice", notification("b"), (username, payload, headers) -> other.add("b"));
+
+        assertThat(frames).containsExactly("alice a");
+        coalescer.flushAll();
+        assertThat(other).containsExactly("b");
+    }
+
+    @Test
+    void keepsCoalescingAfterASendFails() throws InterruptedException {
+        CountDownLatch failed = new CountDownLatch(1);
+        coalescer.submit("alice", notification("a"), (username, payload, headers) -> {
+            failed.countDown();
+            throw new IllegalStateException("session closed");
+        });
+        assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+
+        coalescer.submit("alice", notification("b"), sender);
+
+        awaitFrames(1);
+        assertThat(frames).containsExactly("alice b");
+    }
+
+    @Test
+    void sendsPendingFramesOnShutdown() {
+        coalescer.submit("alice", notification("a"), sender);
+        coalescer.submit("alice", notification("b"), sender);
+
+        coalescer.flushAll();
+
+        assertThat(frames).containsExactly("alice [a, b] batched 2");
+    }
+
+    private void awaitFrames(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (frames.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String describe(Object payload, Map<String, Object> headers) {
+        if (payload instanceof NotificationDto notification) {
+            assertThat(headers).isNull();
+            return notification.getMessage();
+        }
+        assertThat(headers).containsEntry(NotificationCoalescer.BATCHED_HEADER, "true");
+        return ((List<NotificationDto>) payload).stream().map(NotificationDto::getMessage).toList()
+                + " batched " + headers.get(NotificationCoalescer.BATCH_SIZE_HEADER);
+    }
+
+    private static NotificationDto notification(String message) {
+        NotificationDto notification = new NotificationDto();
+        notification.setUserId(7);
+        notification.setMessage(message);
+        return notification;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.notificationsystem.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NotificationDeduplicatorTest {
+
+    private static final long CHUNK_SIZE = 1L << 20;
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void dropsProcessedIds() {
+        NotificationDeduplicator deduplicator = deduplicator(true, 4);
+
+        assertThat(deduplicator.tryClaim(42)).isTrue();
+        deduplicator.markProcessed(42);
+
+        assertThat(deduplicator.tryClaim(42)).isFalse();
+        assertThat(deduplicator.tryClaim(43)).isTrue();
+        assertThat(meterRegistry.counter("notifications.duplicates").count()).isEqualTo(1);
+    }
+
+    @Test
+    void claimsAnIdOnlyOnceWhileItIsInFlight() {
+        NotificationDeduplicator deduplicator = deduplicator(true, 4);
+
+        assertThat(deduplicator.tryClaim(42)).isTrue();
+        assertThat(deduplicator.tryClaim(42)).isFalse();
+
+        deduplicator.release(42);
+        assertThat(deduplicator.tryClaim(42)).isTrue();
+    }
+
+    @Test
+    void deliversIdsOlderThanTheWindow() {
+        NotificationDeduplicator deduplicator = deduplicator(true, 2);
+        markProcessed(deduplicator, 5 * CHUNK_SIZE);
+        markProcessed(deduplicator, 6 * CHUNK_SIZE);
+
+        assertThat(deduplicator.tryClaim(CHUNK_SIZE + 1)).isTrue();
+        assertThat(deduplicator.tryClaim(CHUNK_SIZE + 1)).isTrue();
+        assertThat(meterRegistry.counter("notifications.dedup.too-old").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("notifications.duplicates").count()).isZero();
+    }
+
+    @Test
+    void slidesTheWindowForwardAndForgetsTheOldestChunk() {
+        NotificationDeduplicator deduplicator = deduplicator(true, 2);
+        long oldest = 5 * CHUNK_SIZE + 7;
+        markProcessed(deduplicator, oldest);
+        markProcessed(deduplicator, 6 * CHUNK_SIZE);
+        assertThat(deduplicator.tryClaim(oldest)).isFalse();
+
+        markProcessed(deduplicator, 7 * CHUNK_SIZE);
+
+        assertThat(deduplicator.tryClaim(oldest)).isTrue();
+        assertThat(deduplicator.tryClaim(6 * CHUNK_SIZE)).isFalse();
+        assertThat(deduplicator.tryClaim(7 * CHUNK_SIZE)).isFalse();
+    }
+
+    @Test
+    void keepsIdsAtChunkEdgesApart() {
+        NotificationDeduplicator deduplicator = deduplicator(true, 4);
+        markProcessed(deduplicator, CHUNK_SIZE - 1);
+
+        assertThat(deduplicator.tryClaim(CHUNK_SIZE)).isTrue();
+        assertThat(deduplicator.tryClaim(CHUNK_SIZE - 1)).isFalse();
+    }
+
+    @Test
+    void passesEverythingWhenDisabled() {
+        NotificationDeduplicator deduplicator = deduplicator(false, 4);
+        deduplicator.markProcessed(42);
+
+        assertThat(deduplicator.tryClaim(42)).isTrue();
+        assertThat(deduplicator.tryClaim(42)).isTrue();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void mergesRedisBitmapsIntoTheLocalWindow() {
+        ZSetOperations<String, Object> zSetOperations = mock(ZSetOperations.class);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(zSetOperations.reverseRange(eq("dedup:notifications:chunks"), eq(0L), anyLong()))
+                .thenReturn(new LinkedHashSet<>(Set.of("3")));
+        // Redis numbers bits from the most significant bit: bits 0 and 9 of chunk 3
+        byte[] bitmap = {(byte) 0x80, (byte) 0x40};
+        when(redisTemplate.executePipelined(any(RedisCallback.class), isNull())).thenReturn(List.of(bitmap));
+        NotificationDeduplicator deduplicator = deduplicator(true, 4);
+        markProcessed(deduplicator, 3 * CHUNK_SIZE + 1);
+
+        deduplicator.load();
+
+        assertThat(deduplicator.tryClaim(3 * CHUNK_SIZE)).isFalse();
+        assertThat(deduplicator.tryClaim(3 * CHUNK_SIZE + 9)).isFalse();
+        assertThat(deduplicator.tryClaim(3 * CHUNK_SIZE + 1)).isFalse();
+        assertThat(deduplicator.tryClaim(3 * CHUNK_SIZE + 8)).isTrue();
+    }
+
+    private NotificationDeduplicator deduplicator(boolean enabled, int windowChunks) {
+        return new NotificationDeduplicator(redisTemplate, meterRegistry, enabled, windowChunks, Duration.ofDays(7));
+    }
+
+    private static void markProcessed(NotificationDeduplicator deduplicator, long id) {
+        assertThat(deduplicator.tryClaim(id)).isTrue();
+        deduplicator.markProcessed(id);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.entity.NotificationDto;
+import com.example.notificationsystem.entity.NotificationPriority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NotificationDigesterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final NotificationDigester digester = new NotificationDigester(meterRegistry, true, 50, 2, 3, 1, false);
+
+    private final List<NotificationDto> routed = Collections.synchronizedList(new ArrayList<>());
+    private final Function<NotificationDto, CompletableFuture<Void>> router = notification -> {
+        routed.add(notification);
+        return CompletableFuture.completedFuture(null);
+    };
+
+    @AfterEach
+    void shutdown() {
+        digester.shutdown();
+    }
+
+    @Test
+    void routesABurstForOneUserAsOneDigest() throws Exception {
+        CompletableFuture<Void> first = digester.submit(notification(1, 7, "a"), router);
+        CompletableFuture<Void> second = digester.submit(notification(2, 7, "b"), router);
+        CompletableFuture<Void> other = digester.submit(notification(3, 8, "c"), router);
+
+        CompletableFuture.allOf(first, second, other).get(5, TimeUnit.SECONDS);
+        assertThat(routed).hasSize(2);
+        NotificationDto digest = routedFor(7);
+        assertThat(digest.getId()).isEqualTo(2);
+        assertThat(digest.getDigestCount()).isEqualTo(2);
+        assertThat(digest.getItems()).extracting(NotificationDto::getMessage).containsExactly("a", "b");
+        assertThat(digest.getMessage()).isEqualTo("2 new notifications: b; a");
+        assertThat(meterRegistry.counter("notifications.digest.folded").count()).isEqualTo(1);
+    }
+
+    @Test
+    void routesALoneNotificationUnchanged() throws Exception {
+        NotificationDto notification = notification(1, 7, "a");
+
+        digester.submit(notification, router).get(5, TimeUnit.SECONDS);
+
+        assertThat(routed).containsExactly(notification);
+    }
+
+    @Test
+    void neverHoldsBackUrgentNotifications() {
+        NotificationDto urgent = notification(1, 7, "a");
+        urgent.setPriority(NotificationPriority.URGENT);
+
+        assertThat(digester.submit(urgent, router)).isCompleted();
+        assertThat(routed).containsExactly(urgent);
+    }
+
+    @Test
+    void routesAFullWindowWithoutWaitingAndKeepsTheNewestItems() throws Exception {
+        NotificationDigester slow = new NotificationDigester(meterRegistry, true, 60_000, 2, 3, 1, false);
+        try {
+            slow.submit(notification(1, 7, "a"), router);
+            slow.submit(notification(2, 7, "b"), router);
+            slow.submit(notification(3, 7, "c"), router).get(5, TimeUnit.SECONDS);
+        } finally {
+            slow.shutdown();
+        }
+
+        NotificationDto digest = routedFor(7);
+        assertThat(digest.getDigestCount()).isEqualTo(3);
+        assertThat(digest.getItems()).extracting(NotificationDto::getMessage).containsExactly("b", "c");
+    }
+
+    @Test
+    void failsEveryNotificationOfADigestThatCannotBeRouted() {
+        Function<NotificationDto, CompletableFuture<Void>> failing =
+                notification -> CompletableFuture.failedFuture(new IllegalStateException("inbox down"));
+
+        CompletableFuture<Void> first = digester.submit(notification(1, 7, "a"), failing);
+        CompletableFuture<Void> second = digester.submit(notification(2, 7, "b"), failing);
+
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class)
+                .hasRootCauseMessage("inbox down");
+        assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+    }
+
+    @Test
+    void failsTheDigestWhenTheRouterThrows() {
+        CompletableFuture<Void> waiter = digester.submit(notification(1, 7, "a"), notification -> {
+            throw new IllegalStateException("no username");
+        });
+
+        assertThatThrownBy(() -> waiter.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("no username");
+    }
+
+    @Test
+    void foldsABatchPerUserInOrderOfFirstNotification() {
+        NotificationDto urgent = notification(3, 7, "urgent");
+        urgent.setPriority(NotificationPriority.URGENT);
+
+        List<NotificationDto> folded = digester.fold(List.of(notification(1, 8, "a"), notification(2, 7, "b"),
+                urgent, notification(4, 8, "c"), notification(5, 8, "d")));
+
+        assertThat(folded).extracting(NotificationDto::getMessage)
+                .containsExactly("urgent", "3 new notifications: d; c", "b");
+    }
+
+    @Test
+    void cutsTheSummaryToTheInboxColumn() {
+        String longMessage = "x".repeat(200);
+
+        List<NotificationDto> folded = digester.fold(List.of(notification(1, 7, longMessage),
+                notification(2, 7, longMessage)));
+
+        assertThat(folded.get(0).getMessage()).hasSize(255).endsWith("...");
+    }
+
+    private NotificationDto routedFor(long userId) {
+        synchronized (routed) {
+            return routed.stream().filter(notification -> notification.getUserId() == userId).findFirst().orElseThrow();
+        }
+    }
+
+    private static NotificationDto notification(long id, long userId, String message) {
+        NotificationDto notification = new NotificationDto();
+        notification.setId(id);
+        notification.setUserId(userId);
+        notification.setMessage(message);
+        notification.setPriority(NotificationPriority.NORMAL);
+        return notification;
+    }
+}
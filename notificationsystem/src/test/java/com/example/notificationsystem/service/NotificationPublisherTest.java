@@ -0,0 +1,123 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.entity.NotificationDto;
+import com.example.notificationsystem.entity.NotificationPriority;
+import com.example.notificationsystem.entity.TempNotification;
+import com.example.notificationsystem.exception.PublishNotConfirmedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NotificationPublisherTest {
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final RabbitOperations operations = mock(RabbitOperations.class);
+    private final RabbitConfirmPublisher confirmPublisher = mock(RabbitConfirmPublisher.class);
+    private final PresenceService presenceService = mock(PresenceService.class);
+    private final OfflineInboxStore offlineInboxStore = mock(OfflineInboxStore.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final NotificationDto notification = notification();
+
+    NotificationPublisherTest() {
+        doAnswer(invocation -> invocation.<RabbitOperations.OperationsCallback<?>>getArgument(0).doInRabbit(operations))
+                .when(rabbitTemplate).invoke(any());
+        when(presenceService.getNodeId()).thenReturn("node-a");
+        when(offlineInboxStore.append(any())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    void completesOnceTheBrokerConfirms() {
+        when(confirmPublisher.send(operations, NotificationPublisher.EXCHANGE, NotificationPublisher.SHARED_ROUTING_KEY,
+                notification)).thenReturn(CompletableFuture.completedFuture(null));
+
+        CompletableFuture<Void> published = publisher("shared").publish(notification, "alice");
+
+        assertThat(published).isCompleted();
+        verify(offlineInboxStore, never()).append(any());
+    }
+
+    @Test
+    void storesAnUnconfirmedNotificationInTheInbox() {
+        when(confirmPublisher.send(any(RabbitOperations.class), any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new PublishNotConfirmedException("nacked")));
+
+        CompletableFuture<Void> published = publisher("shared").publish(notification, "alice");
+
+        assertThat(published).isCompleted();
+        ArgumentCaptor<TempNotification> stored = ArgumentCaptor.forClass(TempNotification.class);
+        verify(offlineInboxStore).append(stored.capture());
+        assertThat(stored.getValue().getUsername()).isEqualTo("alice");
+        assertThat(stored.getValue().getUserId()).isEqualTo(7);
+        assertThat(stored.getValue().getMessage()).isEqualTo("Report ready");
+        assertThat(meterRegistry.counter("notifications.publish.inbox-fallback").count()).isEqualTo(1);
+    }
+
+    @Test
+    void storesOneInboxEntryWhenSeveralNodesCannotBeReached() {
+        when(presenceService.getNodes(Set.of("alice"))).thenReturn(Map.of("alice", Set.of("node-b", "node-c")));
+        when(confirmPublisher.send(any(RabbitOperations.class), eq(NotificationPublisher.EXCHANGE), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new PublishNotConfirmedException("returned")));
+
+        CompletableFuture<Void> published = publisher("node").publish(notification, "alice");
+
+        assertThat(published).isCompleted();
+        verify(confirmPublisher).send(any(RabbitOperations.class), any(), eq("node.node-b"), any());
+        verify(confirmPublisher).send(any(RabbitOperations.class), any(), eq("node.node-c"), any());
+        verify(offlineInboxStore).append(any());
+    }
+
+    @Test
+    void failsWhenTheInboxFallbackFails() {
+        when(confirmPublisher.send(any(RabbitOperations.class), any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new PublishNotConfirmedException("nacked")));
+        when(offlineInboxStore.append(any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("inbox down")));
+
+        CompletableFuture<Void> published = publisher("shared").publish(notification, "alice");
+
+        assertThat(published).isCompletedExceptionally();
+    }
+
+    @Test
+    void storesRateLimitedNotificationsThatTheLowLaneRejects() {
+        when(confirmPublisher.send(NotificationPublisher.EXCHANGE, NotificationPublisher.LOW_PRIORITY_ROUTING_KEY,
+                notification)).thenReturn(CompletableFuture.failedFuture(new PublishNotConfirmedException("nacked")));
+
+        CompletableFuture<Void> published = publisher("shared")
+                .publishLowPriority(List.of(notification), Map.of(7L, "alice"));
+
+        assertThat(published).isCompleted();
+        verify(offlineInboxStore).append(any());
+    }
+
+    private NotificationPublisher publisher(String routingMode) {
+        return new NotificationPublisher(rabbitTemplate, confirmPublisher, presenceService,
+                mock(LocalNotificationDelivery.class), mock(InboxReplayService.class), offlineInboxStore,
+                meterRegistry, routingMode, false);
+    }
+
+    private static NotificationDto notification() {
+        NotificationDto notification = new NotificationDto();
+        notification.setId(11);
+        notification.setUserId(7);
+        notification.setMessage("Report ready");
+        notification.setPriority(NotificationPriority.NORMAL);
+        return notification;
+    }
+}
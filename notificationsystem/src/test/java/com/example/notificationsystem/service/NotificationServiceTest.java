@@ -0,0 +1,128 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.entity.NotificationDto;
+import com.example.notificationsystem.entity.TempNotification;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class NotificationServiceTest {
+
+    private final PresenceService presenceService = mock(PresenceService.class);
+    private final UsernameCache usernameCache = mock(UsernameCache.class);
+    private final NotificationPublisher notificationPublisher = mock(NotificationPublisher.class);
+    private final OfflineInboxStore offlineInboxStore = mock(OfflineInboxStore.class);
+    private final NotificationDigester notificationDigester = mock(NotificationDigester.class);
+    private final NotificationRateLimiter rateLimiter = mock(NotificationRateLimiter.class);
+    private final NotificationService notificationService = new NotificationService();
+
+    private final NotificationDto forAlice = notification(1, 7, "Hi alice");
+    private final NotificationDto forBob = notification(2, 8, "Hi bob");
+    private final NotificationDto forNobody = notification(3, 9, "Hi nobody");
+    private final Map<Long, String> usernames = Map.of(7L, "alice", 8L, "bob");
+
+    NotificationServiceTest() {
+        ReflectionTestUtils.setField(notificationService, "presenceService", presenceService);
+        ReflectionTestUtils.setField(notificationService, "usernameCache", usernameCache);
+        ReflectionTestUtils.setField(notificationService, "notificationPublisher", notificationPublisher);
+        ReflectionTestUtils.setField(notificationService, "offlineInboxStore", offlineInboxStore);
+        ReflectionTestUtils.setField(notificationService, "notificationDigester", notificationDigester);
+        ReflectionTestUtils.setField(notificationService, "notificationRateLimiter", rateLimiter);
+        when(notificationDigester.fold(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(usernameCache.getUsernames(anyCollection())).thenReturn(usernames);
+        when(presenceService.areOnline(Set.of("alice", "bob"))).thenReturn(Map.of("alice", true, "bob", false));
+        when(rateLimiter.tryAcquire(any())).thenReturn(true);
+        when(notificationPublisher.publishAll(anyList(), anyMap())).thenReturn(CompletableFuture.completedFuture(null));
+        when(offlineInboxStore.appendAll(anyList())).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @Test
+    void publishesOnlineUsersAndStoresOfflineUsersWithOneCallEach() throws Exception {
+        notificationService.dispatchBatch(List.of(forAlice, forBob, forNobody)).get();
+
+        verify(usernameCache).getUsernames(Set.of(7L, 8L, 9L));
+        verify(presenceService).areOnline(Set.of("alice", "bob"));
+        verify(notificationPublisher).publishAll(List.of(forAlice), usernames);
+        assertThat(storedMessages()).containsExactly("bob: Hi bob");
+        verify(notificationPublisher, never()).publishLowPriority(anyList(), anyMap());
+    }
+
+    @Test
+    void divertsNotificationsOverTheirLimit() throws Exception {
+        when(rateLimiter.tryAcquire(forAlice)).thenReturn(false);
+        when(rateLimiter.getOverflow()).thenReturn(NotificationRateLimiter.Overflow.LANE);
+        when(notificationPublisher.publishLowPriority(anyList(), anyMap()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        notificationService.dispatchBatch(List.of(forAlice, forBob)).get();
+
+        verify(notificationPublisher).publishLowPriority(List.of(forAlice), usernames);
+        verify(notificationPublisher).publishAll(List.of(), usernames);
+    }
+
+    @Test
+    void failsWhenTheOfflineEntriesCannotBeStored() {
+        when(offlineInboxStore.appendAll(anyList()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("db down")));
+
+        CompletableFuture<Void> dispatched = notificationService.dispatchBatch(List.of(forAlice, forBob));
+
+        assertThatThrownBy(dispatched::get).isInstanceOf(ExecutionException.class)
+                .hasRootCauseMessage("db down");
+    }
+
+    @Test
+    void failsWhenAPublishIsNotConfirmed() {
+        CompletableFuture<Void> confirmed = new CompletableFuture<>();
+        when(notificationPublisher.publishAll(eq(List.of(forAlice)), anyMap())).thenReturn(confirmed);
+
+        CompletableFuture<Void> dispatched = notificationService.dispatchBatch(List.of(forAlice, forBob));
+
+        assertThat(dispatched).isNotDone();
+        confirmed.completeExceptionally(new IllegalStateException("nacked"));
+        assertThat(dispatched).isCompletedExceptionally();
+    }
+
+    @Test
+    void doesNothingForAnEmptyBatch() {
+        assertThat(notificationService.dispatchBatch(List.of())).isCompleted();
+
+        verifyNoInteractions(usernameCache, presenceService, notificationPublisher, offlineInboxStore);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> storedMessages() {
+        ArgumentCaptor<List<TempNotification>> stored = ArgumentCaptor.forClass(List.class);
+        verify(offlineInboxStore).appendAll(stored.capture());
+        return stored.getValue().stream()
+                .map(tempNotification -> tempNotification.getUsername() + ": " + tempNotification.getMessage())
+                .toList();
+    }
+
+    private static NotificationDto notification(long id, long userId, String message) {
+        NotificationDto notification = new NotificationDto();
+        notification.setId(id);
+        notification.setUserId(userId);
+        notification.setMessage(message);
+        return notification;
+    }
+}
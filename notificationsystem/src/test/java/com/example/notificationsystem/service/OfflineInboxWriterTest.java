@@ -0,0 +1,139 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.entity.TempNotification;
+import com.example.notificationsystem.repository.TempNotificationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class OfflineInboxWriterTest {
+
+    private static final String POISON = "too long for the column";
+
+    private final TempNotificationRepository repository = mock(TempNotificationRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> stored = new ArrayList<>();
+    private final List<Integer> attempts = new ArrayList<>();
+    private int outages;
+
+    private OfflineInboxWriter writer;
+
+    OfflineInboxWriterTest() {
+        doAnswer(invocation -> {
+            List<TempNotification> rows = invocation.getArgument(0);
+            synchronized (stored) {
+                attempts.add(rows.size());
+                if (outages > 0) {
+                    outages--;
+                    throw new DataAccessResourceFailureException("connection refused");
+                }
+                if (rows.stream().anyMatch(row -> POISON.equals(row.getMessage()))) {
+                    throw new DataIntegrityViolationException("value too long for type character varying(255)");
+                }
+                rows.forEach(row -> stored.add(row.getMessage()));
+            }
+            return null;
+        }).when(repository).insertAll(anyList());
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        writer.stop();
+    }
+
+    @Test
+    void completesOnceTheRowsAreStored() throws Exception {
+        start(1000, 3);
+
+        CompletableFuture<Void> first = writer.enqueue(row("alice", "one"));
+        CompletableFuture<Void> second = writer.enqueueAll(List.of(row("bob", "two"), row("alice", "three")));
+
+        CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+        assertThat(stored).containsExactly("one", "two", "three");
+        assertThat(writer.flushed("alice")).isDone();
+    }
+
+    @Test
+    void retriesAnOutageUntilTheRowsAreStored() throws Exception {
+        outages = 2;
+        start(1000, 3);
+
+        writer.enqueue(row("alice", "one")).get(5, TimeUnit.SECONDS);
+
+        assertThat(attempts).containsExactly(1, 1, 1);
+        assertThat(stored).containsExactly("one");
+    }
+
+    @Test
+    void failsTheWriteOnceTheRetriesAreUsedUp() throws Exception {
+        outages = 3;
+        start(1000, 2);
+
+        CompletableFuture<Void> failed = writer.enqueue(row("alice", "one"));
+
+        assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(attempts).hasSize(3);
+        assertThat(meterRegistry.counter("inbox.writer.failed").count()).isEqualTo(1);
+        // The buffer space was given back and the writer goes on
+        writer.enqueue(row("alice", "two")).get(5, TimeUnit.SECONDS);
+        assertThat(stored).containsExactly("two");
+    }
+
+    @Test
+    void failsOnlyTheWriteHoldingARejectedRow() throws Exception {
+        start(1000, 3);
+
+        CompletableFuture<Void> before = writer.enqueue(row("alice", "one"));
+        CompletableFuture<Void> poison = writer.enqueueAll(List.of(row("bob", "two"), row("bob", POISON)));
+        CompletableFuture<Void> after = writer.enqueue(row("carol", "three"));
+
+        CompletableFuture.allOf(before, after).get(5, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> poison.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(DataIntegrityViolationException.class);
+        assertThat(stored).containsExactlyInAnyOrder("one", "three");
+        assertThat(meterRegistry.counter("inbox.writer.failed").count()).isEqualTo(2);
+        // The rejected write is not retried
+        assertThat(attempts.stream().filter(size -> size == 2)).hasSize(1);
+    }
+
+    @Test
+    void splitsBuffersLargerThanABatch() throws Exception {
+        start(2, 3);
+
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            writes.add(writer.enqueue(row("alice", "row " + i)));
+        }
+
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        assertThat(stored).containsExactly("row 0", "row 1", "row 2", "row 3", "row 4");
+        assertThat(attempts).allMatch(size -> size <= 2);
+    }
+
+    private void start(int batchSize, int maxRetries) {
+        writer = new OfflineInboxWriter(repository, meterRegistry, batchSize, 20, 100, maxRetries);
+        writer.start();
+    }
+
+    private static TempNotification row(String username, String message) {
+        TempNotification tempNotification = new TempNotification();
+        tempNotification.setUserId(1L);
+        tempNotification.setUsername(username);
+        tempNotification.setMessage(message);
+        return tempNotification;
+    }
+}
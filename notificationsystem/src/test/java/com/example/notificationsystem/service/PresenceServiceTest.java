@@ -0,0 +1,143 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.config.NodeIdentity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PresenceServiceTest {
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+    private final PresenceService presenceService = new PresenceService(redisTemplate, new SimpleMeterRegistry(),
+            new NodeIdentity("node-1"), Duration.ofSeconds(60), 100, Duration.ofMinutes(1));
+
+    PresenceServiceTest() {
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+    }
+
+    @Test
+    void storesTheSessionWithItsTtlAndAnnouncesTheUser() {
+        presenceService.sessionConnected("alice", "s1", "web");
+
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("presence:user:alice")), eq("s1"),
+                eq("node-1:web"), eq("60"));
+        verify(redisTemplate).convertAndSend(PresenceService.PRESENCE_CHANNEL, "+alice");
+        assertThat(presenceService.isOnline("alice")).isTrue();
+        verify(redisTemplate, never()).hasKey(anyString());
+    }
+
+    @Test
+    void goesOfflineWithTheLastSession() {
+        presenceService.sessionConnected("alice", "s1", "web");
+        when(redisTemplate.hasKey("presence:user:alice")).thenReturn(false);
+
+        presenceService.sessionDisconnected("s1");
+
+        verify(hashOperations).delete("presence:user:alice", "s1");
+        verify(redisTemplate).convertAndSend(PresenceService.PRESENCE_CHANNEL, "-alice");
+        assertThat(presenceService.isOnline("alice")).isFalse();
+    }
+
+    @Test
+    void staysOnlineWhileAnotherSessionIsOpen() {
+        presenceService.sessionConnected("alice", "s1", "web");
+        when(redisTemplate.hasKey("presence:user:alice")).thenReturn(true);
+
+        presenceService.sessionDisconnected("s1");
+
+        verify(redisTemplate).convertAndSend(PresenceService.PRESENCE_CHANNEL, "~alice");
+        assertThat(presenceService.isOnline("alice")).isTrue();
+    }
+
+    @Test
+    void ignoresSessionsOfOtherNodes() {
+        presenceService.sessionDisconnected("unknown");
+
+        verify(hashOperations, never()).delete(anyString(), any());
+        verify(redisTemplate, never()).convertAndSend(anyString(), any());
+    }
+
+    @Test
+    void asksRedisOnlyForNearCacheMissesInOnePipeline() {
+        presenceService.sessionConnected("alice", "s1", "web");
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(List.of(true, false));
+
+        Map<String, Boolean> online = presenceService.areOnline(List.of("alice", "bob", "carol"));
+
+        assertThat(online).containsEntry("alice", true).containsOnlyKeys("alice", "bob", "carol");
+        assertThat(online.values()).containsExactlyInAnyOrder(true, true, false);
+        verify(redisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void asksRedisAgainAfterAnotherNodeReportsTheUserOffline() {
+        presenceService.sessionConnected("alice", "s1", "web");
+        when(redisTemplate.hasKey("presence:user:alice")).thenReturn(true);
+
+        presenceService.onMessage(event("-alice"), null);
+
+        assertThat(presenceService.isOnline("alice")).isTrue();
+        verify(redisTemplate).hasKey("presence:user:alice");
+    }
+
+    @Test
+    void doesNotCacheAFailedLookup() {
+        when(redisTemplate.hasKey("presence:user:alice"))
+                .thenThrow(new IllegalStateException("redis down"))
+                .thenReturn(true);
+
+        assertThatThrownBy(() -> presenceService.isOnline("alice")).hasMessage("redis down");
+        assertThat(presenceService.isOnline("alice")).isTrue();
+    }
+
+    @Test
+    void leavesOutNodesWhoseHeartbeatExpired() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenReturn(List.of(List.of("node-1:web", "node-2:mobile", "node-3:web")));
+        when(redisTemplate.hasKey("presence:node:node-2")).thenReturn(true);
+        when(redisTemplate.hasKey("presence:node:node-3")).thenReturn(false);
+
+        assertThat(presenceService.getNodes(List.of("alice")))
+                .containsExactly(Map.entry("alice", Set.of("node-1", "node-2")));
+    }
+
+    @Test
+    void removesItsSessionsOnShutdown() {
+        presenceService.sessionConnected("alice", "s1", "web");
+        when(redisTemplate.hasKey("presence:user:alice")).thenReturn(false);
+
+        presenceService.removeLocalSessions();
+
+        verify(hashOperations).delete("presence:user:alice", "s1");
+        verify(redisTemplate).delete("presence:node:node-1");
+    }
+
+    private static DefaultMessage event(String body) {
+        return new DefaultMessage(PresenceService.PRESENCE_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
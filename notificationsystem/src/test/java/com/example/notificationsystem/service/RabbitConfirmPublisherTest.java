@@ -0,0 +1,163 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.exception.PublishNotConfirmedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpConnectException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class RabbitConfirmPublisherTest {
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<CorrelationData> sent = new ArrayList<>();
+    private final RabbitConfirmPublisher publisher = new RabbitConfirmPublisher(rabbitTemplate, meterRegistry,
+            2, 1, 1, 2, 50, false);
+
+    RabbitConfirmPublisherTest() {
+        doAnswer(invocation -> {
+            synchronized (sent) {
+                sent.add(invocation.getArgument(3));
+            }
+            return null;
+        }).when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class), any(CorrelationData.class));
+    }
+
+    @AfterEach
+    void shutdown() {
+        publisher.shutdown();
+    }
+
+    @Test
+    void completesOnceTheBrokerAcks() {
+        CompletableFuture<Void> confirmed = publisher.send("notificationsExchange", "key", "payload");
+        assertThat(confirmed).isNotDone();
+
+        ack(sent(0));
+
+        assertThat(confirmed).isCompleted();
+        assertThat(meterRegistry.get("notifications.publish.outstanding").gauge().value()).isZero();
+    }
+
+    @Test
+    void retriesANackUntilItIsAcked() throws Exception {
+        CompletableFuture<Void> confirmed = publisher.send("notificationsExchange", "key", "payload");
+
+        nack(sent(0));
+        ack(awaitSent(2));
+
+        confirmed.get(5, TimeUnit.SECONDS);
+        assertThat(meterRegistry.counter("notifications.publish.nacked").count()).isEqualTo(1);
+    }
+
+    @Test
+    void failsAfterTheLastRetry() {
+        CompletableFuture<Void> confirmed = publisher.send("notificationsExchange", "key", "payload");
+
+        nack(sent(0));
+        nack(awaitSent(2));
+        nack(awaitSent(3));
+
+        assertThatThrownBy(() -> confirmed.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(PublishNotConfirmedException.class)
+                .hasMessageContaining("gave up after 2 retries");
+        assertThat(meterRegistry.counter("notifications.publish.failed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void failsAReturnedMessageWithoutRetrying() {
+        CompletableFuture<Void> confirmed = publisher.send("notificationsExchange", "node.gone", "payload");
+
+        CorrelationData correlationData = sent(0);
+        correlationData.setReturned(new ReturnedMessage(new Message(new byte[0], new MessageProperties()),
+                312, "NO_ROUTE", "notificationsExchange", "node.gone"));
+        ack(correlationData);
+
+        assertThatThrownBy(confirmed::join)
+                .hasCauseInstanceOf(PublishNotConfirmedException.class)
+                .hasMessageContaining("NO_ROUTE");
+        verify(rabbitTemplate, times(1))
+                .convertAndSend(eq("notificationsExchange"), eq("node.gone"), any(Object.class), any(CorrelationData.class));
+    }
+
+    @Test
+    void retriesAFailedSend() throws Exception {
+        doThrow(new AmqpConnectException(new ConnectException("refused")))
+                .doAnswer(invocation -> {
+                    synchronized (sent) {
+                        sent.add(invocation.getArgument(3));
+                    }
+                    return null;
+                })
+                .when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class), any(CorrelationData.class));
+
+        CompletableFuture<Void> confirmed = publisher.send("notificationsExchange", "key", "payload");
+        ack(awaitSent(1));
+
+        confirmed.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void failsWhenNoConfirmWindowFreesUp() {
+        publisher.send("notificationsExchange", "key", "first");
+        publisher.send("notificationsExchange", "key", "second");
+
+        CompletableFuture<Void> third = publisher.send("notificationsExchange", "key", "third");
+
+        assertThatThrownBy(third::join)
+                .hasCauseInstanceOf(PublishNotConfirmedException.class)
+                .hasMessageContaining("no confirm window");
+        ack(sent(0));
+        assertThat(publisher.send("notificationsExchange", "key", "fourth")).isNotDone();
+    }
+
+    private CorrelationData sent(int index) {
+        synchronized (sent) {
+            return sent.get(index);
+        }
+    }
+
+    // Retries run on the publisher's scheduler
+    private CorrelationData awaitSent(int count) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            synchronized (sent) {
+                if (sent.size() >= count) {
+                    return sent.get(count - 1);
+                }
+            }
+            Thread.onSpinWait();
+        }
+        throw new AssertionError("Expected " + count + " sends, got " + sent.size());
+    }
+
+    private static void ack(CorrelationData correlationData) {
+        correlationData.getFuture().complete(new CorrelationData.Confirm(true, null));
+    }
+
+    private static void nack(CorrelationData correlationData) {
+        correlationData.getFuture().complete(new CorrelationData.Confirm(false, "nack"));
+    }
+}
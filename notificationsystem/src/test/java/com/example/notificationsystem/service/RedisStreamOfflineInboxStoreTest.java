@@ -0,0 +1,99 @@
+package com.example.notificationsystem.service;
+
+import com.example.notificationsystem.dto.response.NotificationPageResponse;
+import com.example.notificationsystem.exception.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class RedisStreamOfflineInboxStoreTest {
+
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    private final RedisStreamOfflineInboxStore store =
+            new RedisStreamOfflineInboxStore(redisTemplate, 10_000, Duration.ofDays(7));
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void drainsAPageInOneScriptCall() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("inbox:alice")), eq("-"), eq("2")))
+                .thenReturn(List.of(
+                        List.of("1718000000000-0", List.of("userId", "7", "message", "first")),
+                        List.of("1718000000000-1", List.of("message", "second", "userId", "7"))));
+
+        NotificationPageResponse page = store.drain("alice", "", 2);
+
+        assertThat(page.getNotifications()).extracting("message").containsExactly("first", "second");
+        assertThat(page.getNotifications()).extracting("userId").containsOnly(7L);
+        assertThat(page.getNextCursor()).isEqualTo("1718000000000-1");
+        assertThat(page.isHasMore()).isTrue();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void continuesAfterTheCursorExclusively() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("inbox:alice")), eq("(1718000000000-1"), eq("2")))
+                .thenReturn(List.of(List.of("1718000000001-0", List.of("userId", "7", "message", "third"))));
+
+        NotificationPageResponse page = store.drain("alice", "1718000000000-1", 2);
+
+        assertThat(page.getNotifications()).extracting("message").containsExactly("third");
+        assertThat(page.getNextCursor()).isEqualTo("1718000000001-0");
+        assertThat(page.isHasMore()).isFalse();
+    }
+
+    @Test
+    void keepsTheCursorOfAnEmptyInbox() {
+        NotificationPageResponse page = store.drain("alice", "1718000000000-1", 2);
+
+        assertThat(page.getNotifications()).isEmpty();
+        assertThat(page.getNextCursor()).isEqualTo("1718000000000-1");
+        assertThat(page.isHasMore()).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void readsAPageWithoutDeletingIt() {
+        ArgumentCaptor<RedisScript> script = ArgumentCaptor.forClass(RedisScript.class);
+        when(redisTemplate.execute(script.capture(), eq(List.of("inbox:alice")), eq("-"), eq("2")))
+                .thenReturn(List.of(List.of("1718000000000-0", List.of("userId", "7", "message", "first"))));
+
+        NotificationPageResponse page = store.read("alice", "", 2);
+
+        assertThat(page.getNotifications()).extracting("message").containsExactly("first");
+        assertThat(page.getNextCursor()).isEqualTo("1718000000000-0");
+        assertThat(script.getValue().getScriptAsString()).doesNotContain("XDEL");
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    void acknowledgesUpToTheCursorInclusively() {
+        ArgumentCaptor<RedisScript> script = ArgumentCaptor.forClass(RedisScript.class);
+
+        store.acknowledge("alice", "1718000000000-1");
+
+        verify(redisTemplate).execute(script.capture(), eq(List.of("inbox:alice")), eq("1718000000000-1"));
+        assertThat(script.getValue().getScriptAsString()).contains("'-', ARGV[1]").contains("XDEL");
+        assertThatThrownBy(() -> store.acknowledge("alice", "42")).isInstanceOf(InvalidCursorException.class);
+    }
+
+    @Test
+    void rejectsCursorsItDidNotIssue() {
+        assertThatThrownBy(() -> store.drain("alice", "42", 2)).isInstanceOf(InvalidCursorException.class);
+        assertThatThrownBy(() -> store.drain("alice", "1-2-3", 2)).isInstanceOf(InvalidCursorException.class);
+        verifyNoInteractions(redisTemplate);
+    }
+}
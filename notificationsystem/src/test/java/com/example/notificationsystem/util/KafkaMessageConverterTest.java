@@ -0,0 +1,116 @@
+package com.example.notificationsystem.util;
+
+import com.example.notificationsystem.entity.BroadcastNotificationDto;
+import com.example.notificationsystem.entity.NotificationDto;
+import com.example.notificationsystem.entity.NotificationPriority;
+import com.example.notificationsystem.entity.NotificationTarget;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KafkaMessageConverterTest {
+
+    private static final String ROW = "{\"id\":184467,\"user_id\":5123,\"message\":\"Report ready\","
+            + "\"source\":\"reports\",\"priority\":\"URGENT\",\"created_at\":1718000000000}";
+
+    private static final String SCHEMA = "{\"type\":\"struct\",\"fields\":[{\"type\":\"struct\",\"fields\":["
+            + "{\"type\":\"int64\",\"optional\":false,\"field\":\"id\"}],\"optional\":true,\"field\":\"after\"}],"
+            + "\"optional\":false,\"name\":\"db-notifications.public.notifications.Envelope\"}";
+
+    private final KafkaMessageConverter converter = new KafkaMessageConverter();
+
+    @Test
+    void readsBarePayload() throws IOException {
+        assertRow(converter.toNotificationDto(payload("null", ROW, "c")));
+    }
+
+    @Test
+    void readsSchemaEnvelope() throws IOException {
+        String envelope = "{\"schema\":" + SCHEMA + ",\"payload\":" + payload("null", ROW, "u") + "}";
+
+        assertRow(converter.toNotificationDto(envelope));
+    }
+
+    @Test
+    void readsPayloadAfterSourceAndTransactionBlocks() throws IOException {
+        String event = "{\"source\":{\"connector\":\"postgresql\",\"sequence\":[\"1\",\"2\"]},"
+                + "\"transaction\":{\"id\":\"747\"},\"before\":" + ROW + ",\"after\":" + ROW + ",\"op\":\"u\"}";
+
+        assertRow(converter.toNotificationDto(event));
+    }
+
+    @Test
+    void returnsNullForTombstones() throws IOException {
+        assertThat(converter.toNotificationDto(null)).isNull();
+        assertThat(converter.toNotificationDto("")).isNull();
+    }
+
+    @Test
+    void returnsNullForDeletes() throws IOException {
+        assertThat(converter.toNotificationDto(payload(ROW, "null", "d"))).isNull();
+        assertThat(converter.toNotificationDto("{\"schema\":" + SCHEMA + ",\"payload\":" + payload(ROW, "null", "d")
+                + "}")).isNull();
+    }
+
+    @Test
+    void leavesNullColumnsUnset() throws IOException {
+        NotificationDto notification = converter.toNotificationDto(payload("null",
+                "{\"id\":7,\"user_id\":3,\"message\":null,\"source\":null,\"priority\":null,\"created_at\":null}",
+                "c"));
+
+        assertThat(notification.getId()).isEqualTo(7);
+        assertThat(notification.getUserId()).isEqualTo(3);
+        assertThat(notification.getMessage()).isNull();
+        assertThat(notification.getPriority()).isEqualTo(NotificationPriority.NORMAL);
+        assertThat(notification.getCreatedAt()).isZero();
+    }
+
+    @Test
+    void readsUserChanges() throws IOException {
+        String user = "{\"id\":42,\"username\":\"alice\",\"password\":\"x\",\"enabled\":true}";
+
+        assertThat(converter.toUserChange(payload("null", user, "c")))
+                .isEqualTo(new KafkaMessageConverter.UserChange(42, "alice"));
+        assertThat(converter.toUserChange(payload(user, "null", "d")))
+                .isEqualTo(new KafkaMessageConverter.UserChange(42, null));
+        assertThat(converter.toUserChange(null)).isNull();
+    }
+
+    @Test
+    void readsBroadcasts() throws IOException {
+        BroadcastNotificationDto broadcast = converter.toBroadcastNotificationDto(payload("null",
+                "{\"id\":9,\"message\":\"Maintenance\",\"target_type\":\"GROUP\",\"target\":\"ops\"}", "c"));
+
+        assertThat(broadcast.getId()).isEqualTo(9);
+        assertThat(broadcast.getMessage()).isEqualTo("Maintenance");
+        assertThat(broadcast.getTargetType()).isEqualTo(NotificationTarget.GROUP);
+        assertThat(broadcast.getTarget()).isEqualTo("ops");
+    }
+
+    @Test
+    void leavesUnknownBroadcastTargetsUnset() throws IOException {
+        BroadcastNotificationDto broadcast = converter.toBroadcastNotificationDto(payload("null",
+                "{\"id\":9,\"message\":\"Maintenance\",\"target_type\":\"TENANT\",\"target\":\"acme\"}", "c"));
+
+        assertThat(broadcast.getId()).isEqualTo(9);
+        assertThat(broadcast.getTargetType()).isNull();
+        assertThat(broadcast.getTarget()).isEqualTo("acme");
+    }
+
+    private static void assertRow(NotificationDto notification) {
+        assertThat(notification).isNotNull();
+        assertThat(notification.getId()).isEqualTo(184467);
+        assertThat(notification.getUserId()).isEqualTo(5123);
+        assertThat(notification.getMessage()).isEqualTo("Report ready");
+        assertThat(notification.getSource()).isEqualTo("reports");
+        assertThat(notification.getPriority()).isEqualTo(NotificationPriority.URGENT);
+        assertThat(notification.getCreatedAt()).isEqualTo(1718000000000L);
+    }
+
+    private static String payload(String before, String after, String op) {
+        return "{\"before\":" + before + ",\"after\":" + after + ",\"source\":{\"connector\":\"postgresql\","
+                + "\"table\":\"notifications\"},\"op\":\"" + op + "\",\"ts_ms\":1718000000456,\"transaction\":null}";
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.notificationsystem.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyOrderedExecutorTest {
+
+    private final KeyOrderedExecutor executor = new KeyOrderedExecutor(Executors.newFixedThreadPool(8));
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Test
+    void runsTasksOfOneKeyInSubmissionOrder() throws Exception {
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int task = i;
+            results.add(executor.submit("user-1", () -> {
+                seen.add(task);
+                return task;
+            }));
+        }
+
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            expected.add(i);
+        }
+        assertThat(seen).containsExactlyElementsOf(expected);
+        assertThat(results.get(999).get()).isEqualTo(999);
+    }
+
+    @Test
+    void waitsForTheReturnedStageBeforeTheNextTaskOfTheKey() throws Exception {
+        CompletableFuture<Void> firstDone = new CompletableFuture<>();
+        CountDownLatch secondStarted = new CountDownLatch(1);
+
+        CompletableFuture<Void> first = executor.submitAsync("user-1", () -> firstDone);
+        CompletableFuture<Void> second = executor.submit("user-1", () -> {
+            secondStarted.countDown();
+            return null;
+        });
+
+        assertThat(secondStarted.await(200, TimeUnit.MILLISECONDS)).isFalse();
+        firstDone.complete(null);
+        second.get(5, TimeUnit.SECONDS);
+        assertThat(first).isDone();
+        assertThat(secondStarted.getCount()).isZero();
+    }
+
+    @Test
+    void runsOtherKeysWhileOneKeyIsBusy() throws Exception {
+        CompletableFuture<Void> blocked = new CompletableFuture<>();
+        executor.submitAsync("user-1", () -> blocked);
+
+        assertThat(executor.submit("user-2", () -> "done").get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(blocked).isNotDone();
+        blocked.complete(null);
+    }
+
+    @Test
+    void continuesWithTheKeyAfterAFailedTask() throws Exception {
+        CompletableFuture<Object> failed = executor.submit("user-1", () -> {
+            throw new IllegalStateException("boom");
+        });
+        CompletableFuture<Object> failedAsync = executor.submitAsync("user-1",
+                () -> CompletableFuture.failedFuture(new IllegalStateException("async boom")));
+        CompletableFuture<String> next = executor.submit("user-1", () -> "next");
+
+        assertThat(next.get(5, TimeUnit.SECONDS)).isEqualTo("next");
+        assertThatThrownBy(failed::join).hasRootCauseMessage("boom");
+        assertThatThrownBy(failedAsync::join).hasRootCauseMessage("async boom");
+    }
+
+    @Test
+    void forgetsKeysOnceTheirTasksAreDone() throws Exception {
+        executor.submit("user-1", () -> 1).get(5, TimeUnit.SECONDS);
+
+        // The tail is removed by a completion callback that may still be running
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.activeKeys() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(executor.activeKeys()).isZero();
+    }
+
+    @Test
+    void blocksSubmittersWhileMaxPendingTasksAreUnfinished() throws Exception {
+        KeyOrderedExecutor bounded = new KeyOrderedExecutor(Executors.newFixedThreadPool(2), 2);
+        try {
+            CompletableFuture<Void> first = new CompletableFuture<>();
+            bounded.submitAsync("user-1", () -> first);
+            bounded.submitAsync("user-2", () -> new CompletableFuture<Void>());
+
+            CompletableFuture<String> third = CompletableFuture.supplyAsync(() ->
+                    bounded.submit("user-3", () -> "third").join());
+
+            Thread.sleep(200);
+            assertThat(third).isNotDone();
+            first.complete(null);
+            assertThat(third.get(5, TimeUnit.SECONDS)).isEqualTo("third");
+        } finally {
+            bounded.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsASubmitterInterruptedWhileWaiting() throws Exception {
+        KeyOrderedExecutor bounded = new KeyOrderedExecutor(Executors.newFixedThreadPool(1), 1);
+        try {
+            bounded.submitAsync("user-1", () -> new CompletableFuture<Void>());
+
+            Thread.currentThread().interrupt();
+            assertThatThrownBy(() -> bounded.submit("user-2", () -> "second"))
+                    .isInstanceOf(RejectedExecutionException.class);
+            assertThat(Thread.interrupted()).isTrue();
+        } finally {
+            bounded.shutdown();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.notificationsystem.util;
+
+import com.example.notificationsystem.entity.NotificationDto;
+import com.example.notificationsystem.entity.NotificationPriority;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NotificationBinaryMessageConverterTest {
+
+    @Test
+    void roundTripsEveryField() {
+        NotificationDto decoded = NotificationBinaryMessageConverter.decode(
+                NotificationBinaryMessageConverter.encode(notification("Grüße, 通知 ✓", NotificationPriority.URGENT)));
+
+        assertThat(decoded.getId()).isEqualTo(184467);
+        assertThat(decoded.getUserId()).isEqualTo(5123);
+        assertThat(decoded.getCreatedAt()).isEqualTo(1718000000000L);
+        assertThat(decoded.getMessage()).isEqualTo("Grüße, 通知 ✓");
+        assertThat(decoded.getPriority()).isEqualTo(NotificationPriority.URGENT);
+    }
+
+    @Test
+    void keepsNullAndEmptyMessagesApart() {
+        assertThat(roundTrip(notification(null, NotificationPriority.NORMAL)).getMessage()).isNull();
+        assertThat(roundTrip(notification("", NotificationPriority.NORMAL)).getMessage()).isEmpty();
+    }
+
+    @Test
+    void roundTripsLargeAndNegativeNumbers() {
+        NotificationDto notification = notification("x", NotificationPriority.BULK);
+        notification.setId(Long.MAX_VALUE);
+        notification.setUserId(-1);
+
+        NotificationDto decoded = roundTrip(notification);
+
+        assertThat(decoded.getId()).isEqualTo(Long.MAX_VALUE);
+        assertThat(decoded.getUserId()).isEqualTo(-1);
+    }
+
+    @Test
+    void readsVersion1BodiesAsNormalPriority() {
+        byte[] body = NotificationBinaryMessageConverter.encode(notification("hello", NotificationPriority.URGENT),
+                NotificationBinaryMessageConverter.VERSION_1);
+
+        NotificationDto decoded = NotificationBinaryMessageConverter.decode(body);
+
+        assertThat(body[0]).isEqualTo(NotificationBinaryMessageConverter.VERSION_1);
+        assertThat(decoded.getMessage()).isEqualTo("hello");
+        assertThat(decoded.getUserId()).isEqualTo(5123);
+        assertThat(decoded.getPriority()).isEqualTo(NotificationPriority.NORMAL);
+    }
+
+    @Test
+    void version2AddsOnlyThePriorityByte() {
+        NotificationDto notification = notification("hello", NotificationPriority.BULK);
+
+        byte[] version1 = NotificationBinaryMessageConverter.encode(notification, NotificationBinaryMessageConverter.VERSION_1);
+        byte[] version2 = NotificationBinaryMessageConverter.encode(notification, NotificationBinaryMessageConverter.VERSION_2);
+
+        assertThat(version2).hasSize(version1.length + 1);
+        assertThat(version2[0]).isEqualTo(NotificationBinaryMessageConverter.VERSION_2);
+    }
+
+    @Test
+    void rejectsUnknownVersionsAndTruncatedBodies() {
+        byte[] body = NotificationBinaryMessageConverter.encode(notification("hello", NotificationPriority.NORMAL));
+        byte[] unknownVersion = body.clone();
+        unknownVersion[0] = 3;
+
+        assertThatThrownBy(() -> NotificationBinaryMessageConverter.decode(new byte[0]))
+                .isInstanceOf(MessageConversionException.class);
+        assertThatThrownBy(() -> NotificationBinaryMessageConverter.decode(unknownVersion))
+                .isInstanceOf(MessageConversionException.class);
+        assertThatThrownBy(() -> NotificationBinaryMessageConverter.decode(Arrays.copyOf(body, body.length - 3)))
+                .isInstanceOf(MessageConversionException.class);
+    }
+
+    @Test
+    void writesTheConfiguredVersionAndReadsJsonFromOlderWriters() {
+        NotificationBinaryMessageConverter converter =
+                new NotificationBinaryMessageConverter(new Jackson2JsonMessageConverter(), true, 1);
+        Message binary = converter.toMessage(notification("hello", NotificationPriority.NORMAL), new MessageProperties());
+        Message json = new Jackson2JsonMessageConverter()
+                .toMessage(notification("from json", NotificationPriority.URGENT), new MessageProperties());
+
+        assertThat(binary.getMessageProperties().getContentType()).isEqualTo(NotificationBinaryMessageConverter.CONTENT_TYPE);
+        assertThat(binary.getBody()[0]).isEqualTo(NotificationBinaryMessageConverter.VERSION_1);
+        assertThat(((NotificationDto) converter.fromMessage(binary)).getMessage()).isEqualTo("hello");
+        NotificationDto fromJson = (NotificationDto) converter.fromMessage(json);
+        assertThat(fromJson.getMessage()).isEqualTo("from json");
+        assertThat(fromJson.getPriority()).isEqualTo(NotificationPriority.URGENT);
+    }
+
+    @Test
+    void keepsJsonUntilBinaryIsEnabled() {
+        NotificationBinaryMessageConverter converter =
+                new NotificationBinaryMessageConverter(new Jackson2JsonMessageConverter(), false, 2);
+
+        Message message = converter.toMessage(notification("hello", NotificationPriority.NORMAL), new MessageProperties());
+
+        assertThat(message.getMessageProperties().getContentType()).isEqualTo(MessageProperties.CONTENT_TYPE_JSON);
+    }
+
+    private static NotificationDto roundTrip(NotificationDto notification) {
+        return NotificationBinaryMessageConverter.decode(NotificationBinaryMessageConverter.encode(notification));
+    }
+
+    private static NotificationDto notification(String message, NotificationPriority priority) {
+        NotificationDto notification = new NotificationDto();
+        notification.setId(184467);
+        notification.setUserId(5123);
+        notification.setCreatedAt(1718000000000L);
+        notification.setMessage(message);
+        notification.setPriority(priority);
+        return notification;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.notificationsystem.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StripedTokenBucketsTest {
+
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+
+    @Test
+    void startsWithAFullBurst() {
+        StripedTokenBuckets buckets = buckets(1, 10, 3);
+
+        assertThat(buckets.tryAcquire(1)).isTrue();
+        assertThat(buckets.tryAcquire(1)).isTrue();
+        assertThat(buckets.tryAcquire(1)).isTrue();
+        assertThat(buckets.tryAcquire(1)).isFalse();
+    }
+
+    @Test
+    void refillsOneTokenPerInterval() {
+        StripedTokenBuckets buckets = buckets(1, 10, 1);
+        assertThat(buckets.tryAcquire(1)).isTrue();
+
+        clock.addAndGet(99);
+        assertThat(buckets.tryAcquire(1)).isFalse();
+        clock.addAndGet(1);
+        assertThat(buckets.tryAcquire(1)).isTrue();
+        assertThat(buckets.tryAcquire(1)).isFalse();
+    }
+
+    @Test
+    void keepsFractionalTokensAcrossRejectedCalls() {
+        // 3 per second: a token takes 333.3 ms, so it is available at 334 ms and not at 333 ms
+        StripedTokenBuckets buckets = buckets(1, 3, 1);
+        assertThat(buckets.tryAcquire(1)).isTrue();
+
+        for (int i = 0; i < 333; i++) {
+            clock.incrementAndGet();
+            assertThat(buckets.tryAcquire(1)).isFalse();
+        }
+        clock.incrementAndGet();
+        assertThat(buckets.tryAcquire(1)).isTrue();
+    }
+
+    @Test
+    void sustainsTheConfiguredRate() {
+        StripedTokenBuckets buckets = buckets(1, 50, 1);
+        assertThat(buckets.tryAcquire(1)).isTrue();
+
+        int acquired = 0;
+        for (int millis = 0; millis < 10_000; millis++) {
+            clock.incrementAndGet();
+            while (buckets.tryAcquire(1)) {
+                acquired++;
+            }
+        }
+
+        assertThat(acquired).isEqualTo(500);
+    }
+
+    @Test
+    void capsTheRefillAtTheBurst() {
+        StripedTokenBuckets buckets = buckets(1, 10, 2);
+        assertThat(buckets.tryAcquire(1)).isTrue();
+        assertThat(buckets.tryAcquire(1)).isTrue();
+
+        clock.addAndGet(TimeUnit.HOURS.toMillis(1));
+
+        assertThat(buckets.tryAcquire(1)).isTrue();
+        assertThat(buckets.tryAcquire(1)).isTrue();
+        assertThat(buckets.tryAcquire(1)).isFalse();
+    }
+
+    @Test
+    void doesNotCountTheIdleTimeOfAFullBucketTwice() {
+        StripedTokenBuckets buckets = buckets(1, 10, 1);
+        clock.addAndGet(TimeUnit.MINUTES.toMillis(1));
+
+        assertThat(buckets.tryAcquire(1)).isTrue();
+        clock.incrementAndGet();
+        assertThat(buckets.tryAcquire(1)).isFalse();
+        clock.addAndGet(99);
+        assertThat(buckets.tryAcquire(1)).isTrue();
+    }
+
+    @Test
+    void ignoresAClockThatStepsBack() {
+        StripedTokenBuckets buckets = buckets(1, 10, 1);
+        clock.addAndGet(1_000);
+        assertThat(buckets.tryAcquire(1)).isTrue();
+
+        clock.addAndGet(-500);
+        assertThat(buckets.tryAcquire(1)).isFalse();
+        clock.addAndGet(600);
+        assertThat(buckets.tryAcquire(1)).isTrue();
+    }
+
+    @Test
+    void sharesABucketPerStripe() {
+        StripedTokenBuckets shared = buckets(1, 10, 1);
+        assertThat(shared.tryAcquire(1)).isTrue();
+        assertThat(shared.tryAcquire(2)).isFalse();
+
+        StripedTokenBuckets striped = buckets(1024, 10, 1);
+        assertThat(striped.tryAcquire(1)).isTrue();
+        assertThat(striped.tryAcquire(1)).isFalse();
+        assertThat(striped.tryAcquire(2)).isTrue();
+    }
+
+    @Test
+    void grantsExactlyTheBurstToConcurrentCallers() throws Exception {
+        StripedTokenBuckets buckets = buckets(1, 10, 100);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    int acquired = 0;
+                    for (int i = 0; i < 1_000; i++) {
+                        if (buckets.tryAcquire(1)) {
+                            acquired++;
+                        }
+                    }
+                    return acquired;
+                }));
+            }
+            start.countDown();
+
+            int acquired = 0;
+            for (Future<Integer> result : results) {
+                acquired += result.get(10, TimeUnit.SECONDS);
+            }
+            assertThat(acquired).isEqualTo(100);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectsInvalidConfiguration() {
+        assertThatThrownBy(() -> new StripedTokenBuckets(1000, 10, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new StripedTokenBuckets(16, 10, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new StripedTokenBuckets(16, 10, 16_778)).isInstanceOf(IllegalArgumentException.class);
+        new StripedTokenBuckets(16, 10, 16_777);
+    }
+
+    private StripedTokenBuckets buckets(int stripes, long ratePerSecond, long burst) {
+        return new StripedTokenBuckets(stripes, ratePerSecond, burst, clock::get);
+    }
+}